@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import com.samsung.android.sdk.shealth.tracker.TrackerTileManager;
+
+import android.content.Context;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of the MyTracker callbacks and tile posts.
+ */
+@State(Scope.Benchmark)
+public class MyTrackerBenchmark {
+
+    private static final String TRACKER_ID = "tracker.sample";
+    private static final String TILE_ID = "sample_tile";
+
+    // Window of the TilePostScheduler in milliseconds
+    @Param({"0", "300"})
+    public long postWindowMs;
+
+    // Simulated cost of a call into S Health in nanoseconds
+    @Param({"0", "50000"})
+    public long ipcCostNanos;
+
+    private Context mContext;
+    private MyTracker mTracker;
+
+    @Setup
+    public void setUp() {
+        TrackerTileManager.reset();
+        TrackerTileManager.setCallCostNanos(ipcCostNanos);
+        TilePostScheduler.getInstance().setWindow(postWindowMs);
+
+        mContext = new Context();
+        mTracker = new MyTracker(mContext);
+        mTracker.onCreate(mContext, TRACKER_ID);
+    }
+
+    @Benchmark
+    public void updateTile() {
+        mTracker.updateTile(mContext, TRACKER_ID, TILE_ID);
+    }
+
+    @Benchmark
+    public void postDefaultTile() {
+        mTracker.postDefaultTile(mContext, TRACKER_ID, TILE_ID);
+    }
+
+    @Benchmark
+    public void onSubscribed() {
+        mTracker.onSubscribed(mContext, TRACKER_ID);
+    }
+
+    @Benchmark
+    public void onTileRequested() {
+        mTracker.onTileRequested(mContext, TRACKER_ID, TILE_ID);
+    }
+
+    @Benchmark
+    public boolean verifyValidationKey() {
+        ValidationKeyVerifier verifier = ValidationKeyVerifier.getInstance(mContext);
+        return verifier.verify(verifier.getKey());
+    }
+
+    @Benchmark
+    public void traceEvent() {
+        TrackerTrace.d(TrackerTrace.Event.ON_TILE_REQUESTED, TRACKER_ID, TILE_ID);
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import com.samsung.android.sdk.shealth.tracker.TrackerTileManager;
+
+import android.content.Intent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * End to end benchmarks of the intents sent by the tile buttons to MyTrackerService.
+ */
+@State(Scope.Benchmark)
+public class MyTrackerServiceBenchmark {
+
+    private static final String TRACKER_ID = "tracker.sample";
+    private static final String TILE_ID = "sample_tile";
+
+    // Window of the TilePostScheduler in milliseconds
+    @Param({"0", "300"})
+    public long postWindowMs;
+
+    // Simulated cost of a call into S Health in nanoseconds
+    @Param({"0", "50000"})
+    public long ipcCostNanos;
+
+    private MyTrackerService mService;
+    private Intent mIncrementIntent;
+    private Intent mLogInIntent;
+    private Intent mInvalidKeyIntent;
+
+    @Setup
+    public void setUp() {
+        TrackerTileManager.reset();
+        TrackerTileManager.setCallCostNanos(ipcCostNanos);
+        TilePostScheduler.getInstance().setWindow(postWindowMs);
+
+        mService = new MyTrackerService();
+        mService.onCreate();
+
+        String validationKey = ValidationKeyVerifier.getInstance(mService).getKey();
+        mIncrementIntent = buttonIntent(validationKey, false);
+        mLogInIntent = buttonIntent(validationKey, true);
+        mInvalidKeyIntent = buttonIntent("invalid", false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mService.onDestroy();
+    }
+
+    @Benchmark
+    public void onHandleIntentIncrement() {
+        mService.onHandleIntent(mIncrementIntent);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void onHandleIntentIncrementConcurrent() {
+        mService.onHandleIntent(mIncrementIntent);
+    }
+
+    @Benchmark
+    public void onHandleIntentLogIn() {
+        mService.onHandleIntent(mLogInIntent);
+    }
+
+    @Benchmark
+    public void onHandleIntentInvalidKey() {
+        mService.onHandleIntent(mInvalidKeyIntent);
+    }
+
+    private static Intent buttonIntent(String validationKey, boolean isLogInRequest) {
+        Intent intent = new Intent();
+        intent.putExtra(TrackerTileManager.EXTRA_TRACKER_ID, TRACKER_ID);
+        intent.putExtra(TrackerTileManager.EXTRA_TILE_ID, TILE_ID);
+        intent.putExtra("validation_key", validationKey);
+        intent.putExtra("log_in", isLogInRequest);
+        return intent;
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import java.util.Arrays;
+
+/**
+ * Keeps every recorded latency so percentiles are exact rather than bucketed.
+ */
+final class LatencyRecorder {
+
+    private long[] mSamples = new long[1024];
+    private int mCount;
+    private boolean mSorted;
+
+    synchronized void record(long nanos) {
+        if (mCount == mSamples.length) {
+            mSamples = Arrays.copyOf(mSamples, mCount * 2);
+        }
+        mSamples[mCount++] = nanos;
+        mSorted = false;
+    }
+
+    synchronized int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns the latency below which the given fraction of the samples fall, or 0 if there are none.
+     */
+    synchronized long getPercentile(double fraction) {
+        if (mCount == 0) {
+            return 0;
+        }
+        sort();
+        int index = (int) Math.ceil(fraction * mCount) - 1;
+        return mSamples[Math.max(0, Math.min(mCount - 1, index))];
+    }
+
+    synchronized long getMax() {
+        if (mCount == 0) {
+            return 0;
+        }
+        sort();
+        return mSamples[mCount - 1];
+    }
+
+    /**
+     * Returns p50, p99, p999 and max in the given unit, e.g. 1000 for microseconds.
+     */
+    String format(long unitNanos) {
+        return "n=" + getCount()
+                + " p50=" + getPercentile(0.5) / unitNanos
+                + " p99=" + getPercentile(0.99) / unitNanos
+                + " p999=" + getPercentile(0.999) / unitNanos
+                + " max=" + getMax() / unitNanos;
+    }
+
+    private void sort() {
+        if (!mSorted) {
+            Arrays.sort(mSamples, 0, mCount);
+            mSorted = true;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import com.samsung.android.sdk.shealth.tracker.TrackerTileManager;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open loop load test of MyTracker and MyTrackerService through {@link SimulatedShealthHost}.
+ * Tile button taps arrive at a fixed rate regardless of how fast they are handled, spread round
+ * robin over the tiles and sent by a number of threads. Latencies are measured from the time a
+ * tap was due rather than the time it was sent, so a stalled sender does not hide the stall.
+ * A tap counts as done once a tile showing its increment is posted to S Health, and as lost if
+ * its increment is missing from TileStateStore after the service is destroyed.
+ * With refresh=1 a periodic refresh pass of {@link TileRefreshScheduler} is run afterwards, once
+ * the minute the tiles are dated with has passed, and again right after.
+ *
+ * Arguments are key=value pairs, e.g.
+ *
+ *     gradle -p benchmark loadTest -PloadTestArgs="rate=2000 tiles=128 threads=8 duration=30"
+ */
+public final class LoadTest {
+
+    private static final long DRAIN_POLL_MS = 10;
+    private static final long LOG_IN_TIMEOUT_MS = 10000;
+
+    private final int mTrackerCount;
+    private final int mTileCount;
+    private final double mRate;
+    private final int mThreadCount;
+    private final long mDurationMs;
+    private final long mWindowMs;
+    private final long mIpcCostUs;
+    private final long mDrainTimeoutMs;
+    private final boolean mRefresh;
+
+    private final Context mContext = new Context();
+    private final SimulatedShealthHost mHost = new SimulatedShealthHost(mContext, MyTracker.class);
+
+    // Indexed by tap sequence modulo the tile count
+    private Tile[] mTiles;
+    private final ConcurrentHashMap<String, Tile> mTilesByKey = new ConcurrentHashMap<String, Tile>();
+
+    private final LatencyRecorder mDispatchLatencies = new LatencyRecorder();
+
+    public static void main(String[] args) throws Exception {
+        HashMap<String, String> options = new HashMap<String, String>();
+        for (String arg : args) {
+            for (String option : arg.trim().split("\\s+")) {
+                int separator = option.indexOf('=');
+                if (separator <= 0) {
+                    if (!option.isEmpty()) {
+                        throw new IllegalArgumentException("expected key=value: " + option);
+                    }
+                    continue;
+                }
+                options.put(option.substring(0, separator), option.substring(separator + 1));
+            }
+        }
+
+        int status = 1;
+        try {
+            new LoadTest(options).run();
+            status = 0;
+        } finally {
+            // The workers of MyTrackerService keep the VM alive otherwise
+            System.exit(status);
+        }
+    }
+
+    private LoadTest(HashMap<String, String> options) {
+        mTrackerCount = (int) longOption(options, "trackers", 1);
+        mTileCount = (int) longOption(options, "tiles", 64);
+        mRate = Double.parseDouble(option(options, "rate", "500"));
+        mThreadCount = (int) longOption(options, "threads", 4);
+        mDurationMs = TimeUnit.SECONDS.toMillis(longOption(options, "duration", 10));
+        mWindowMs = longOption(options, "window", TilePostScheduler.DEFAULT_WINDOW_MS);
+        mIpcCostUs = longOption(options, "ipcCostUs", 50);
+        mDrainTimeoutMs = TimeUnit.SECONDS.toMillis(longOption(options, "drainTimeout", 10));
+        mRefresh = longOption(options, "refresh", 0) != 0;
+        if (!options.isEmpty()) {
+            throw new IllegalArgumentException("unknown options " + options.keySet());
+        }
+        if (mTrackerCount <= 0 || mTileCount <= 0 || mRate <= 0 || mThreadCount <= 0) {
+            throw new IllegalArgumentException("trackers, tiles, rate and threads must be positive");
+        }
+    }
+
+    private void run() throws Exception {
+        System.out.println(String.format(Locale.US,
+                "trackers=%d tiles=%d rate=%.0f/s threads=%d duration=%ds window=%dms ipcCost=%dus",
+                mTrackerCount, mTileCount * mTrackerCount, mRate, mThreadCount,
+                TimeUnit.MILLISECONDS.toSeconds(mDurationMs), mWindowMs, mIpcCostUs));
+
+        TrackerTileManager.reset();
+        TrackerTileManager.setCallCostNanos(TimeUnit.MICROSECONDS.toNanos(mIpcCostUs));
+        TilePostScheduler.getInstance().setWindow(mWindowMs);
+        TrackerMetrics.reset();
+
+        setUp();
+        long rejectedBefore = TrackerMetrics.getCount(TrackerMetrics.Counter.ADMISSION_REJECTED);
+        long foldedBefore = TrackerMetrics.getCount(TrackerMetrics.Counter.ADMISSION_FOLDED);
+        long postsBefore = TrackerTileManager.getPostCount();
+
+        long startTime = System.nanoTime();
+        sendTaps(startTime);
+        long sendEndTime = System.nanoTime();
+
+        awaitPosted(mDrainTimeoutMs);
+
+        // Folded increments left are submitted on destroy
+        mHost.stop();
+        awaitExecutorIdle(mDrainTimeoutMs);
+        boolean drained = awaitPosted(mWindowMs + DRAIN_POLL_MS);
+        long postsDuringRun = TrackerTileManager.getPostCount() - postsBefore;
+        long rejected = TrackerMetrics.getCount(TrackerMetrics.Counter.ADMISSION_REJECTED) - rejectedBefore;
+        long folded = TrackerMetrics.getCount(TrackerMetrics.Counter.ADMISSION_FOLDED) - foldedBefore;
+
+        long sent = 0;
+        long applied = 0;
+        long posted = 0;
+        long lastPostTime = startTime;
+        LatencyRecorder postLatencies = new LatencyRecorder();
+        TileStateStore store = TileStateStore.getInstance(mContext);
+        for (Tile tile : mTiles) {
+            synchronized (tile) {
+                sent += tile.sent;
+                posted += tile.posted;
+                applied += store.getContentValue(tile.trackerId, tile.tileId) - tile.baseValue;
+                lastPostTime = Math.max(lastPostTime, tile.lastPostTime);
+                for (int i = 0; i < tile.posted; i++) {
+                    postLatencies.record(tile.latencies[i]);
+                }
+            }
+        }
+
+        if (mRefresh) {
+            refresh();
+        }
+        tearDown();
+
+        double sendSeconds = (sendEndTime - startTime) / 1e9;
+        double postSeconds = (lastPostTime - startTime) / 1e9;
+        System.out.println(String.format(Locale.US, "taps: sent=%d rejected=%d folded=%d posts=%d%s",
+                sent, rejected, folded, postsDuringRun, drained ? "" : " (taps left unposted after drainTimeout)"));
+        System.out.println(String.format(Locale.US, "throughput: offered=%.1f/s sent=%.1f/s posted=%.1f/s",
+                mRate, sent / sendSeconds, postSeconds > 0 ? posted / postSeconds : 0));
+        System.out.println("tap to return of onStartCommand us: " + mDispatchLatencies.format(1000));
+        System.out.println("tap to posted tile ms: " + postLatencies.format(1000000));
+        for (SimulatedShealthHost.Callback callback : SimulatedShealthHost.Callback.values()) {
+            System.out.println(callback.name().toLowerCase(Locale.US) + " us: "
+                    + mHost.getLatencies(callback).format(1000));
+        }
+        // Every tap carries a valid key, so a rejected tap is a lost update too
+        System.out.println(String.format(Locale.US, "lost updates: %d, taps not shown on a posted tile: %d",
+                sent - applied, sent - posted));
+    }
+
+    // Subscribes the trackers, requests the tiles and logs each one in so taps show up on them
+    private void setUp() throws Exception {
+        mHost.start();
+        TrackerTileManager.setPostListener(new TrackerTileManager.PostListener() {
+            @Override
+            public void onPost(String trackerId, String tileId, String contentValue) {
+                Tile tile = mTilesByKey.get(trackerId + '/' + tileId);
+                if (tile != null && contentValue != null) {
+                    tile.onPost(Integer.parseInt(contentValue));
+                }
+            }
+        });
+
+        mTiles = new Tile[mTrackerCount * mTileCount];
+        int expectedPerTile = (int) Math.ceil(mRate * mDurationMs / 1000 / mTiles.length) + 1;
+        for (int t = 0; t < mTrackerCount; t++) {
+            String trackerId = "tracker.loadtest." + t;
+            mHost.subscribe(trackerId);
+            for (int i = 0; i < mTileCount; i++) {
+                Tile tile = new Tile(trackerId, "tile_" + i, expectedPerTile);
+                mTiles[t * mTileCount + i] = tile;
+                mTilesByKey.put(trackerId + '/' + tile.tileId, tile);
+                mHost.requestTile(trackerId, tile.tileId);
+                mHost.click(trackerId, tile.tileId, true);
+            }
+        }
+
+        // The first request of a tile gets a token or passes a full admission table unlimited,
+        // so all log ins are handled once the executor is idle
+        awaitExecutorIdle(LOG_IN_TIMEOUT_MS);
+        TileStateStore store = TileStateStore.getInstance(mContext);
+        int loggedOut = 0;
+        for (Tile tile : mTiles) {
+            boolean loggedIn = store.isLoggedIn(tile.trackerId, tile.tileId);
+            if (!loggedIn) {
+                loggedOut++;
+            }
+            synchronized (tile) {
+                tile.loggedIn = loggedIn;
+                tile.baseValue = store.getContentValue(tile.trackerId, tile.tileId);
+            }
+        }
+        if (loggedOut > 0) {
+            System.out.println("tiles not logged in: " + loggedOut);
+        }
+        // Lets the log in posts go out so they are not taken for taps
+        Thread.sleep(mWindowMs + DRAIN_POLL_MS);
+    }
+
+    // Every logged in tile is stale once the minute it is dated with has passed, so the first pass
+    // posts all of them again and an immediate second one none
+    private void refresh() throws InterruptedException {
+        int loggedIn = 0;
+        for (Tile tile : mTiles) {
+            synchronized (tile) {
+                if (tile.loggedIn) {
+                    loggedIn++;
+                }
+            }
+        }
+
+        long minuteMs = TimeUnit.MINUTES.toMillis(1);
+        Thread.sleep(minuteMs - System.currentTimeMillis() % minuteMs + DRAIN_POLL_MS);
+        long stalePosts = refreshPass();
+        long freshPosts = refreshPass();
+        System.out.println(String.format(Locale.US, "refresh: logged in tiles=%d posted by a pass after the minute=%d"
+                + " posted by the pass right after=%d", loggedIn, stalePosts, freshPosts));
+    }
+
+    // Returns the number of posts of one refresh pass
+    private long refreshPass() throws InterruptedException {
+        long postsBefore = TrackerTileManager.getPostCount();
+        final CountDownLatch done = new CountDownLatch(1);
+        TileRefreshScheduler.getInstance(mContext).refresh(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        done.await();
+        return TrackerTileManager.getPostCount() - postsBefore;
+    }
+
+    private void tearDown() {
+        for (Tile tile : mTiles) {
+            mHost.removeTile(tile.trackerId, tile.tileId);
+        }
+        for (int t = 0; t < mTrackerCount; t++) {
+            mHost.unsubscribe("tracker.loadtest." + t);
+        }
+        TrackerTileManager.setPostListener(null);
+    }
+
+    private void sendTaps(final long startTime) throws InterruptedException {
+        final long intervalNanos = (long) (1e9 / mRate);
+        final long tapCount = (long) (mRate * mDurationMs / 1000);
+
+        ArrayList<Thread> senders = new ArrayList<Thread>();
+        for (int i = 0; i < mThreadCount; i++) {
+            final int first = i;
+            Thread sender = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (long sequence = first; sequence < tapCount; sequence += mThreadCount) {
+                        long dueTime = startTime + sequence * intervalNanos;
+                        long delay = dueTime - System.nanoTime();
+                        if (delay > 0) {
+                            LockSupport.parkNanos(delay);
+                        }
+
+                        Tile tile = mTiles[(int) (sequence % mTiles.length)];
+                        tile.onSend(dueTime);
+                        mHost.click(tile.trackerId, tile.tileId, false);
+                        mDispatchLatencies.record(System.nanoTime() - dueTime);
+                    }
+                }
+            }, "LoadTest-" + i);
+            senders.add(sender);
+            sender.start();
+        }
+        for (Thread sender : senders) {
+            sender.join();
+        }
+    }
+
+    private boolean awaitPosted(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (Tile tile : mTiles) {
+            // Tiles the service turned away show no content value to wait for
+            while (!tile.isDone()) {
+                if (System.currentTimeMillis() > deadline) {
+                    return false;
+                }
+                Thread.sleep(DRAIN_POLL_MS);
+            }
+        }
+        return true;
+    }
+
+    private static void awaitExecutorIdle(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (MyTrackerService.getExecutor().getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(DRAIN_POLL_MS);
+        }
+    }
+
+    private static String option(HashMap<String, String> options, String key, String defValue) {
+        String value = options.remove(key);
+        return value != null ? value : defValue;
+    }
+
+    private static long longOption(HashMap<String, String> options, String key, long defValue) {
+        return Long.parseLong(option(options, key, String.valueOf(defValue)));
+    }
+
+    // Taps of one tile, the n-th tap being done once a tile with baseValue + n or more is posted
+    private static final class Tile {
+        final String trackerId;
+        final String tileId;
+        boolean loggedIn;
+        int baseValue;
+        int sent;
+        int posted;
+        long lastPostTime;
+        // Due time of each tap, replaced by its latency once it is posted
+        long[] latencies;
+
+        Tile(String trackerId, String tileId, int expectedTaps) {
+            this.trackerId = trackerId;
+            this.tileId = tileId;
+            latencies = new long[expectedTaps];
+        }
+
+        // Called before the tap is sent so its post cannot be seen first
+        synchronized void onSend(long dueTime) {
+            if (sent == latencies.length) {
+                latencies = Arrays.copyOf(latencies, sent * 2);
+            }
+            latencies[sent++] = dueTime;
+        }
+
+        synchronized void onPost(int contentValue) {
+            long now = System.nanoTime();
+            int shown = Math.min(contentValue - baseValue, sent);
+            if (shown <= posted) {
+                return;
+            }
+            while (posted < shown) {
+                latencies[posted] = now - latencies[posted];
+                posted++;
+            }
+            lastPostTime = now;
+        }
+
+        synchronized boolean isDone() {
+            return !loggedIn || posted == sent;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import com.samsung.android.sdk.shealth.tracker.TrackerEventListener;
+import com.samsung.android.sdk.shealth.tracker.TrackerTileManager;
+
+import android.content.Context;
+import android.content.Intent;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in of the S Health application on a plain JVM.
+ * Instantiates the tracker controller through its empty constructor like S Health does, drives it
+ * through the TrackerEventListener callbacks and delivers the tile button intents to
+ * MyTrackerService through onStartCommand. The callbacks may be called from several threads,
+ * each one is timed into its own LatencyRecorder.
+ */
+final class SimulatedShealthHost {
+
+    private static final String SHARED_PREFERENCE_LOGIN_KEY = "log_in";
+    private static final String VALIDATION_KEY = "validation_key";
+
+    enum Callback {
+        ON_CREATE,
+        ON_SUBSCRIBED,
+        ON_TILE_REQUESTED,
+        ON_TILE_REMOVED,
+        ON_UNSUBSCRIBED,
+        ON_START_COMMAND
+    }
+
+    private final Context mContext;
+    private final Class<? extends TrackerEventListener> mControllerClass;
+    private final MyTrackerService mService = new MyTrackerService();
+    private final AtomicInteger mStartId = new AtomicInteger();
+
+    // Guarded by itself
+    private final HashMap<String, TrackerEventListener> mControllers = new HashMap<String, TrackerEventListener>();
+
+    private final LatencyRecorder[] mLatencies = new LatencyRecorder[Callback.values().length];
+
+    SimulatedShealthHost(Context context, Class<? extends TrackerEventListener> controllerClass) {
+        mContext = context;
+        mControllerClass = controllerClass;
+        for (int i = 0; i < mLatencies.length; i++) {
+            mLatencies[i] = new LatencyRecorder();
+        }
+    }
+
+    void start() {
+        mService.onCreate();
+    }
+
+    /**
+     * Destroys the service as Android does once it stopped itself.
+     */
+    void stop() {
+        mService.onDestroy();
+    }
+
+    /**
+     * Creates the controller of the tracker and subscribes to it.
+     */
+    void subscribe(String trackerId) throws ReflectiveOperationException {
+        TrackerEventListener controller = mControllerClass.getConstructor().newInstance();
+        synchronized (mControllers) {
+            mControllers.put(trackerId, controller);
+        }
+
+        long startTime = System.nanoTime();
+        controller.onCreate(mContext, trackerId);
+        record(Callback.ON_CREATE, startTime);
+
+        startTime = System.nanoTime();
+        controller.onSubscribed(mContext, trackerId);
+        record(Callback.ON_SUBSCRIBED, startTime);
+    }
+
+    void unsubscribe(String trackerId) {
+        TrackerEventListener controller;
+        synchronized (mControllers) {
+            controller = mControllers.remove(trackerId);
+        }
+        if (controller == null) {
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        controller.onUnsubscribed(mContext, trackerId);
+        record(Callback.ON_UNSUBSCRIBED, startTime);
+    }
+
+    void requestTile(String trackerId, String tileId) {
+        long startTime = System.nanoTime();
+        controller(trackerId).onTileRequested(mContext, trackerId, tileId);
+        record(Callback.ON_TILE_REQUESTED, startTime);
+    }
+
+    void removeTile(String trackerId, String tileId) {
+        long startTime = System.nanoTime();
+        controller(trackerId).onTileRemoved(mContext, trackerId, tileId);
+        record(Callback.ON_TILE_REMOVED, startTime);
+    }
+
+    /**
+     * Sends the intent of the tile button to MyTrackerService, as S Health does when it is tapped.
+     */
+    void click(String trackerId, String tileId, boolean isLogInRequest) {
+        Intent intent = new Intent();
+        intent.putExtra(TrackerTileManager.EXTRA_TRACKER_ID, trackerId);
+        intent.putExtra(TrackerTileManager.EXTRA_TILE_ID, tileId);
+        intent.putExtra(VALIDATION_KEY, ValidationKeyVerifier.getInstance(mContext).getKey());
+        intent.putExtra(SHARED_PREFERENCE_LOGIN_KEY, isLogInRequest);
+
+        long startTime = System.nanoTime();
+        mService.onStartCommand(intent, 0, mStartId.incrementAndGet());
+        record(Callback.ON_START_COMMAND, startTime);
+    }
+
+    LatencyRecorder getLatencies(Callback callback) {
+        return mLatencies[callback.ordinal()];
+    }
+
+    private TrackerEventListener controller(String trackerId) {
+        synchronized (mControllers) {
+            TrackerEventListener controller = mControllers.get(trackerId);
+            if (controller == null) {
+                throw new IllegalStateException(trackerId + " is not subscribed");
+            }
+            return controller;
+        }
+    }
+
+    private void record(Callback callback, long startTime) {
+        mLatencies[callback.ordinal()].record(System.nanoTime() - startTime);
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package android.app;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.IBinder;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
+/**
+ * Stand-in of android.app.Service.
+ */
+public abstract class Service extends Context {
+
+    public static final int START_NOT_STICKY = 2;
+
+    public void onCreate() {
+    }
+
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        return START_NOT_STICKY;
+    }
+
+    public abstract IBinder onBind(Intent intent);
+
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+    }
+
+    public void onDestroy() {
+    }
+
+    public final void stopSelf(int startId) {
+    }
+
+    public final boolean stopSelfResult(int startId) {
+        return true;
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package android.content;
+
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stand-in of android.content.Context.
+ * All instances share the state of one application process: preferences are kept in memory and
+ * files are stored in a temporary directory.
+ */
+public class Context {
+
+    public static final int MODE_PRIVATE = 0;
+
+    private static final ConcurrentHashMap<String, SharedPreferences> sPreferences =
+            new ConcurrentHashMap<String, SharedPreferences>();
+    private static final Resources sResources = new Resources();
+    private static final PackageManager sPackageManager = new PackageManager();
+    private static File sDataDir;
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public String getPackageName() {
+        return "com.samsung.android.app.sampleservice";
+    }
+
+    public Resources getResources() {
+        return sResources;
+    }
+
+    public PackageManager getPackageManager() {
+        return sPackageManager;
+    }
+
+    public SharedPreferences getSharedPreferences(String name, int mode) {
+        SharedPreferences preferences = sPreferences.get(name);
+        if (preferences == null) {
+            SharedPreferences created = new InMemorySharedPreferences();
+            preferences = sPreferences.putIfAbsent(name, created);
+            if (preferences == null) {
+                preferences = created;
+            }
+        }
+        return preferences;
+    }
+
+    public File getFilesDir() {
+        return dir("files");
+    }
+
+    public File getCacheDir() {
+        return dir("cache");
+    }
+
+    private static synchronized File dir(String name) {
+        if (sDataDir == null) {
+            try {
+                sDataDir = Files.createTempDirectory("sampleservice").toFile();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        File dir = new File(sDataDir, name);
+        dir.mkdirs();
+        return dir;
+    }
+}
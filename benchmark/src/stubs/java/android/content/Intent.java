@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package android.content;
+
+import java.util.HashMap;
+
+/**
+ * Stand-in of android.content.Intent holding extras in a map.
+ */
+public class Intent {
+
+    public static final String ACTION_VIEW = "android.intent.action.VIEW";
+
+    private final HashMap<String, Object> mExtras = new HashMap<String, Object>();
+    private Class<?> mComponent;
+
+    public Intent() {
+    }
+
+    public Intent(Context packageContext, Class<?> cls) {
+        mComponent = cls;
+    }
+
+    public Class<?> getComponent() {
+        return mComponent;
+    }
+
+    public Intent putExtra(String name, String value) {
+        mExtras.put(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, boolean value) {
+        mExtras.put(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, int value) {
+        mExtras.put(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, long value) {
+        mExtras.put(name, value);
+        return this;
+    }
+
+    public String getStringExtra(String name) {
+        return (String) mExtras.get(name);
+    }
+
+    public boolean getBooleanExtra(String name, boolean defaultValue) {
+        Object value = mExtras.get(name);
+        return value != null ? (Boolean) value : defaultValue;
+    }
+
+    public int getIntExtra(String name, int defaultValue) {
+        Object value = mExtras.get(name);
+        return value != null ? (Integer) value : defaultValue;
+    }
+
+    public long getLongExtra(String name, long defaultValue) {
+        Object value = mExtras.get(name);
+        return value != null ? (Long) value : defaultValue;
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package android.content.pm;
+
+import android.content.ComponentName;
+
+/**
+ * Stand-in of android.content.pm.PackageManager.
+ * The package declares no components, so the tracker manifest index comes out empty.
+ */
+public class PackageManager {
+
+    public static final int GET_META_DATA = 0x80;
+
+    public static class NameNotFoundException extends Exception {
+        public NameNotFoundException(String name) {
+            super(name);
+        }
+    }
+
+    public PackageInfo getPackageInfo(String packageName, int flags) throws NameNotFoundException {
+        PackageInfo info = new PackageInfo();
+        info.packageName = packageName;
+        return info;
+    }
+
+    public ServiceInfo getServiceInfo(ComponentName component, int flags) throws NameNotFoundException {
+        throw new NameNotFoundException(component.getClassName());
+    }
+}
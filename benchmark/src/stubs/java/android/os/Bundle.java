@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package android.os;
+
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * Stand-in of android.os.Bundle holding strings only.
+ */
+public final class Bundle {
+
+    private final HashMap<String, String> mValues = new HashMap<String, String>();
+
+    public Set<String> keySet() {
+        return mValues.keySet();
+    }
+
+    public String getString(String key) {
+        return mValues.get(key);
+    }
+
+    public void putString(String key, String value) {
+        mValues.put(key, value);
+    }
+}
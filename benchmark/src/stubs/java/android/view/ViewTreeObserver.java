@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package android.view;
+
+/**
+ * Stand-in of android.view.ViewTreeObserver. Nothing is ever drawn on the JVM.
+ */
+public final class ViewTreeObserver {
+
+    public interface OnPreDrawListener {
+        boolean onPreDraw();
+    }
+
+    public void addOnPreDrawListener(OnPreDrawListener listener) {
+    }
+
+    public void removeOnPreDrawListener(OnPreDrawListener listener) {
+    }
+}
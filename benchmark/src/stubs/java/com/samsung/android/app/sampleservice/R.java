@@ -0,0 +1,40 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+/**
+ * Stand-in of the generated resource ids used on the benchmarked paths.
+ */
+public final class R {
+
+    public static final class color {
+        public static final int tracker_content_color = 0x7f040000;
+    }
+
+    public static final class drawable {
+        public static final int ic_launcher = 0x7f020000;
+        public static final int tracker_icon = 0x7f020001;
+        public static final int tracker_icon_30x30 = 0x7f020002;
+    }
+
+    public static final class string {
+        public static final int app_name = 0x7f060000;
+        public static final int tracker_display_name = 0x7f060001;
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.sdk.shealth;
+
+import android.content.Context;
+
+/**
+ * Stand-in of the S Health SDK entry point. All features are reported as enabled.
+ */
+public class Shealth {
+
+    public static final int FEATURE_TRACKER = 1;
+    public static final int FEATURE_TRACKER_TILE = 2;
+    public static final int FEATURE_TRACKER_LAUNCH = 3;
+    public static final int FEATURE_TRACKER_LAUNCH_EXTENDED = 4;
+
+    public void initialize(Context context) {
+    }
+
+    public boolean isFeatureEnabled(int... features) {
+        return true;
+    }
+
+    public int getVersionCode() {
+        return 1;
+    }
+
+    public String getVersionName() {
+        return "1.0";
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.sdk.shealth.tracker;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.res.Resources.NotFoundException;
+
+import java.util.Date;
+
+/**
+ * Stand-in of the S Health TrackerTile which only keeps the values it is given.
+ */
+public final class TrackerTile {
+
+    public static final int TRACKER_TILE_TYPE_1 = 0;
+    public static final int TRACKER_TILE_TYPE_2 = 1;
+    public static final int TRACKER_TILE_TYPE_3 = 2;
+
+    public static final int INTENT_TYPE_ACTIVITY = 0;
+    public static final int INTENT_TYPE_SERVICE = 1;
+
+    final String mTrackerId;
+    final String mTileId;
+    final int mTemplate;
+    int mTitleResId;
+    int mIconResId;
+    String mContentValue;
+    String mContentUnit;
+    Date mDate;
+    int mContentColor;
+    Intent mContentIntent;
+    CharSequence mButtonText;
+    Intent mButtonIntent;
+
+    public TrackerTile(Context context, String trackerId, String tileId, int template)
+            throws IllegalArgumentException {
+        if (context == null || trackerId == null || tileId == null) {
+            throw new IllegalArgumentException("invalid argument");
+        }
+        mTrackerId = trackerId;
+        mTileId = tileId;
+        mTemplate = template;
+    }
+
+    public TrackerTile setTitle(int resId) throws NotFoundException, IllegalArgumentException {
+        mTitleResId = resId;
+        return this;
+    }
+
+    public TrackerTile setIcon(int resId) throws NotFoundException, IllegalArgumentException {
+        mIconResId = resId;
+        return this;
+    }
+
+    public TrackerTile setContentValue(String value) throws IllegalArgumentException {
+        mContentValue = value;
+        return this;
+    }
+
+    public TrackerTile setContentUnit(String unit) throws IllegalArgumentException {
+        mContentUnit = unit;
+        return this;
+    }
+
+    public TrackerTile setDate(Date date) throws IllegalArgumentException {
+        mDate = date;
+        return this;
+    }
+
+    public TrackerTile setContentColor(int color) {
+        mContentColor = color;
+        return this;
+    }
+
+    public TrackerTile setContentIntent(int intentType, Intent intent) throws IllegalArgumentException {
+        mContentIntent = intent;
+        return this;
+    }
+
+    public TrackerTile setButtonIntent(CharSequence text, int intentType, Intent intent)
+            throws IllegalArgumentException {
+        mButtonText = text;
+        mButtonIntent = intent;
+        return this;
+    }
+}
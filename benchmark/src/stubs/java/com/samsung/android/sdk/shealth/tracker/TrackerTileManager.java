@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.sdk.shealth.tracker;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in of the S Health TrackerTileManager.
+ * Posted tiles are kept in memory, and every call can be made to spin for a configurable time to
+ * simulate the cost of the IPC into S Health.
+ */
+public final class TrackerTileManager {
+
+    public static final String EXTRA_TRACKER_ID = "com.samsung.android.sdk.shealth.intent.extra.TRACKER_ID";
+    public static final String EXTRA_TILE_ID = "com.samsung.android.sdk.shealth.intent.extra.TILE_ID";
+
+    /**
+     * Told of every tile posted, on the posting thread.
+     */
+    public interface PostListener {
+        void onPost(String trackerId, String tileId, String contentValue);
+    }
+
+    private static final ConcurrentHashMap<String, TrackerTile> sPostedTiles =
+            new ConcurrentHashMap<String, TrackerTile>();
+    private static final AtomicLong sPostCount = new AtomicLong();
+    private static volatile long sCallCostNanos;
+    private static volatile PostListener sPostListener;
+
+    public TrackerTileManager(Context context) throws IllegalArgumentException {
+        if (context == null) {
+            throw new IllegalArgumentException("context is null");
+        }
+    }
+
+    /**
+     * Sets the time every call spins to simulate the IPC into S Health.
+     */
+    public static void setCallCostNanos(long nanos) {
+        sCallCostNanos = nanos;
+    }
+
+    public static void setPostListener(PostListener listener) {
+        sPostListener = listener;
+    }
+
+    public static long getPostCount() {
+        return sPostCount.get();
+    }
+
+    public static void reset() {
+        sPostedTiles.clear();
+        sPostCount.set(0);
+    }
+
+    public boolean post(TrackerTile tile) throws IllegalArgumentException {
+        if (tile == null) {
+            throw new IllegalArgumentException("tile is null");
+        }
+        spin();
+        sPostedTiles.put(tile.mTrackerId + '/' + tile.mTileId, tile);
+        sPostCount.incrementAndGet();
+        PostListener listener = sPostListener;
+        if (listener != null) {
+            listener.onPost(tile.mTrackerId, tile.mTileId, tile.mContentValue);
+        }
+        return true;
+    }
+
+    public boolean remove(String trackerId, String tileId) throws IllegalArgumentException {
+        spin();
+        return sPostedTiles.remove(trackerId + '/' + tileId) != null;
+    }
+
+    public ArrayList<String> getPostedTrackerTileIds(String trackerId) throws IllegalArgumentException {
+        spin();
+        ArrayList<String> tileIds = new ArrayList<String>();
+        for (Map.Entry<String, TrackerTile> entry : sPostedTiles.entrySet()) {
+            if (entry.getValue().mTrackerId.equals(trackerId)) {
+                tileIds.add(entry.getValue().mTileId);
+            }
+        }
+        return tileIds;
+    }
+
+    private static void spin() {
+        long nanos = sCallCostNanos;
+        if (nanos > 0) {
+            long deadline = System.nanoTime() + nanos;
+            while (System.nanoTime() < deadline) {
+                // Busy wait like a blocking binder call
+            }
+        }
+    }
+}
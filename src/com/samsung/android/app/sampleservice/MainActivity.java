@@ -18,62 +18,222 @@
 
 package com.samsung.android.app.sampleservice;
 
-import com.samsung.android.sdk.shealth.Shealth;
-import com.samsung.android.sdk.shealth.tracker.TrackerInfo;
 import com.samsung.android.sdk.shealth.tracker.TrackerManager;
 import com.samsung.android.sdk.shealth.tracker.TrackerTileManager;
 
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.graphics.Color;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
 import android.text.Spannable;
-import android.text.SpannableStringBuilder;
+import android.text.SpannableString;
 import android.text.style.ForegroundColorSpan;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
-import android.widget.ImageView;
+import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public class MainActivity extends Activity {
 
     private static final String LOG_TAG = "SampleService";
     private static final String STORE_URL = "market://details?id=com.sec.android.app.shealth";
-    private static final String MY_TRACKER_ID = "tracker.sample";
+    private static final String NO_POSTED_TILE_TEXT = "No posted TrackerTile";
+
+    // Every TrackerManager.TrackerId, in the order the SDK declares them
+    private static final String[] LAUNCHER_TRACKER_IDS = {
+            TrackerManager.TrackerId.HEART_RATE, TrackerManager.TrackerId.SPO2,
+            TrackerManager.TrackerId.STRESS, TrackerManager.TrackerId.UV,
+            TrackerManager.TrackerId.BLOOD_PRESSURE, TrackerManager.TrackerId.BLOOD_GLUCOSE,
+            TrackerManager.TrackerId.SLEEP, TrackerManager.TrackerId.WEIGHT, TrackerManager.TrackerId.FOOD,
+            TrackerManager.TrackerId.CAFFEINE, TrackerManager.TrackerId.WATER,
+            TrackerManager.TrackerId.PEDOMETER, TrackerManager.TrackerId.WALKING,
+            TrackerManager.TrackerId.RUNNING, TrackerManager.TrackerId.CYCLING,
+            TrackerManager.TrackerId.HIKING, TrackerManager.TrackerId.BASEBALL,
+            TrackerManager.TrackerId.SOFTBALL, TrackerManager.TrackerId.CRICKET,
+            TrackerManager.TrackerId.GOLF, TrackerManager.TrackerId.BOWLING,
+            TrackerManager.TrackerId.FIELD_HOCKEY, TrackerManager.TrackerId.RUGBY,
+            TrackerManager.TrackerId.BASKETBALL, TrackerManager.TrackerId.FOOTBALL,
+            TrackerManager.TrackerId.HANDBALL, TrackerManager.TrackerId.AMERICAN_FOOTBALL,
+            TrackerManager.TrackerId.VOLLEYBALL, TrackerManager.TrackerId.BEACH_VOLLEYBALL,
+            TrackerManager.TrackerId.SQUASH, TrackerManager.TrackerId.TENNIS,
+            TrackerManager.TrackerId.BADMINTON, TrackerManager.TrackerId.TABLE_TENNIS,
+            TrackerManager.TrackerId.RACQUETBALL, TrackerManager.TrackerId.BOXING,
+            TrackerManager.TrackerId.MARTIAL_ARTS, TrackerManager.TrackerId.BALLET,
+            TrackerManager.TrackerId.BALLROOM_DANCE, TrackerManager.TrackerId.DANCING,
+            TrackerManager.TrackerId.PILATES, TrackerManager.TrackerId.YOGA,
+            TrackerManager.TrackerId.STRETCHING, TrackerManager.TrackerId.SKIPPING,
+            TrackerManager.TrackerId.HULA_HOOPING, TrackerManager.TrackerId.PUSH_UP,
+            TrackerManager.TrackerId.PULL_UP, TrackerManager.TrackerId.SIT_UP,
+            TrackerManager.TrackerId.CIRCUIT_TRAINING, TrackerManager.TrackerId.MOUNTAIN_CLIMBER,
+            TrackerManager.TrackerId.STAR_JUMP, TrackerManager.TrackerId.BURPEE_TEST,
+            TrackerManager.TrackerId.BENCH_PRESS, TrackerManager.TrackerId.SQUAT,
+            TrackerManager.TrackerId.LUNGE, TrackerManager.TrackerId.LEG_PRESS,
+            TrackerManager.TrackerId.LEG_EXTENSION, TrackerManager.TrackerId.LEG_CURL,
+            TrackerManager.TrackerId.BACK_EXTENSION, TrackerManager.TrackerId.LAT_PULL_DOWN,
+            TrackerManager.TrackerId.DEADLIFT, TrackerManager.TrackerId.SHOULDER_PRESS,
+            TrackerManager.TrackerId.FRONT_RAISE, TrackerManager.TrackerId.LATERAL_RAISE,
+            TrackerManager.TrackerId.CRUNCH, TrackerManager.TrackerId.LEG_RAISE,
+            TrackerManager.TrackerId.PLANK, TrackerManager.TrackerId.ARM_CURL,
+            TrackerManager.TrackerId.ARM_EXTENSION, TrackerManager.TrackerId.INLINE_SKATING,
+            TrackerManager.TrackerId.HANG_GLIDING, TrackerManager.TrackerId.ARCHERY,
+            TrackerManager.TrackerId.HORSEBACK_RIDING, TrackerManager.TrackerId.FRISBEE,
+            TrackerManager.TrackerId.ROLLER_SKATING, TrackerManager.TrackerId.AEROBIC,
+            TrackerManager.TrackerId.ROCK_CLIMBING, TrackerManager.TrackerId.BACKPACKING,
+            TrackerManager.TrackerId.MOUNTAIN_BIKING, TrackerManager.TrackerId.ORIENTEERING,
+            TrackerManager.TrackerId.SWIMMING, TrackerManager.TrackerId.AQUAROBICS,
+            TrackerManager.TrackerId.CANOEING, TrackerManager.TrackerId.SAILING,
+            TrackerManager.TrackerId.SKINDIVING_SCUBA_DIVING, TrackerManager.TrackerId.SNORKELING,
+            TrackerManager.TrackerId.KAYAKING, TrackerManager.TrackerId.KITE_SURFING,
+            TrackerManager.TrackerId.RAFTING, TrackerManager.TrackerId.ROWING,
+            TrackerManager.TrackerId.WINDSURFING, TrackerManager.TrackerId.YACHTING,
+            TrackerManager.TrackerId.WATER_SKIING, TrackerManager.TrackerId.STEP_MACHINE,
+            TrackerManager.TrackerId.WEIGHT_MACHINE, TrackerManager.TrackerId.EXERCISE_BIKE,
+            TrackerManager.TrackerId.ROWING_MACHINE, TrackerManager.TrackerId.TREADMILL,
+            TrackerManager.TrackerId.ELLIPTICAL_TRAINER, TrackerManager.TrackerId.CROSS_COUNTRY_SKIING,
+            TrackerManager.TrackerId.SKIING, TrackerManager.TrackerId.ICE_DANCING,
+            TrackerManager.TrackerId.ICE_SKATING, TrackerManager.TrackerId.ICE_HOCKEY,
+            TrackerManager.TrackerId.SNOWBOARDING, TrackerManager.TrackerId.ALPINE_SKIING,
+            TrackerManager.TrackerId.SNOW_SHOEING, TrackerManager.TrackerId.FLOOR,
+            TrackerManager.TrackerId.THERMO_HYGROMETER
+    };
+
+    // Launcher rows, one per tracker. Rows are bound only once shown, so their number does not add
+    // to the start-up cost.
+    private static final TrackerLauncherAdapter.Item[] LAUNCHER_ITEMS = createLauncherItems();
     private TrackerManager mTrackerManager = null;
 
     private TextView mTileIdsTextView;
     private Button mRemoveButton;
     private TrackerTileManager mTrackerTileManager;
+    private TrackerLauncherAdapter mLauncherAdapter;
+    private boolean mStarted;
+
+    // Read from files in the background, null until onStateLoaded
+    private PostedTileRegistry mPostedTileRegistry;
+    private TileStateStore mTileStateStore;
+
+    // Trackers declared in the manifest index, all shown together
+    private String[] mTrackerIds = new String[0];
+
+    // Keys of the posted tiles shown in mTileIdsTextView, sorted, and the text shown for each
+    private final ArrayList<String> mShownTiles = new ArrayList<String>();
+    private final ArrayList<String> mShownLabels = new ArrayList<String>();
+    private boolean mShowingPlaceholder;
+
+    private final PostedTileRegistry.OnChangedListener mPostedTilesListener =
+            new PostedTileRegistry.OnChangedListener() {
+        @Override
+        public void onPostedTilesChanged(String trackerId, List<String> tileIds) {
+            if (!isFinishing()) {
+                // The changed tiles themselves arrive through mTileStateObserver
+                updateRemoveButton();
+            }
+        }
+    };
+
+    private final TileStateStream.Observer mTileStateObserver = new TileStateStream.Observer() {
+        @Override
+        public void onTilesChanged(String trackerId, Set<String> tileIds) {
+            if (!isFinishing()) {
+                renderTiles(toKeys(trackerId, tileIds));
+            }
+        }
+    };
+
+    // Water offers tracking, trends and its target, every other tracker its default screen and trends
+    private static TrackerLauncherAdapter.Item[] createLauncherItems() {
+        TrackerLauncherAdapter.Item[] items = new TrackerLauncherAdapter.Item[LAUNCHER_TRACKER_IDS.length];
+        for (int i = 0; i < items.length; i++) {
+            String trackerId = LAUNCHER_TRACKER_IDS[i];
+            if (TrackerManager.TrackerId.WATER.equals(trackerId)) {
+                items[i] = new TrackerLauncherAdapter.Item(trackerId, TrackerManager.Destination.TRACK,
+                        TrackerManager.Destination.TRENDS, TrackerManager.Destination.TARGET);
+            } else {
+                items[i] = new TrackerLauncherAdapter.Item(trackerId, null, TrackerManager.Destination.TRENDS);
+            }
+        }
+        return items;
+    }
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        StartupTimer.onActivityCreate(this);
 
-        Shealth shealth = new Shealth();
-        try {
-            shealth.initialize(this);
-            if (shealth.isFeatureEnabled(Shealth.FEATURE_TRACKER_TILE, Shealth.FEATURE_TRACKER_LAUNCH_EXTENDED)) {
-                mTrackerManager = new TrackerManager(this);
-                mTrackerTileManager = new TrackerTileManager(this);
-            } else {
-                Log.d(LOG_TAG, "SHealth should be upgraded");
-                Intent intent = new Intent(Intent.ACTION_VIEW, Uri.parse(STORE_URL));
-                this.startActivity(intent);
-                finish();
-                return;
+        // The tiles are shown once their state is loaded, which reads files and the PackageManager
+        loadState();
+
+        mRemoveButton = (Button) findViewById(R.id.btn_remove);
+        mTileIdsTextView = (TextView) findViewById(R.id.txt_state);
+        mRemoveButton.setEnabled(false);
+
+        // Edited in place as tiles change
+        mTileIdsTextView.setText(NO_POSTED_TILE_TEXT, TextView.BufferType.EDITABLE);
+        mShowingPlaceholder = true;
+
+        mRemoveButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                if (mTrackerTileManager == null) {
+                    return;
+                }
+                mRemoveButton.setEnabled(false);
+                // Removes all tiles in the background instead of one blocking call per tile
+                for (String trackerId : mTrackerIds) {
+                    mPostedTileRegistry.removeAll(mTrackerTileManager, trackerId, mPostedTilesListener);
+                }
             }
-        } catch (IllegalStateException e) {
-            Log.e(LOG_TAG, e.toString());
-            Toast.makeText(this, e.toString(), Toast.LENGTH_LONG).show();
+        });
+
+        // Rows are drawn from the TrackerInfo cache until SHealth is initialized
+        mLauncherAdapter = new TrackerLauncherAdapter(this, LAUNCHER_ITEMS);
+        ((ListView) findViewById(R.id.list_trackers)).setAdapter(mLauncherAdapter);
+
+        // SHealth is initialized in the background while the menus are drawn from the cache
+        ShealthInitializer.getInstance().whenReady(this, new ShealthInitializer.Callback() {
+            @Override
+            public void onInitialized(ShealthInitializer.Result result) {
+                if (!isFinishing()) {
+                    onShealthInitialized(result);
+                }
+            }
+        });
+    }
+
+    private void onShealthInitialized(ShealthInitializer.Result result) {
+        if (result.error != null) {
+            Log.e(LOG_TAG, result.error.toString());
+            Toast.makeText(this, result.error.toString(), Toast.LENGTH_LONG).show();
+            finish();
+            return;
+        }
+
+        if (!result.isFeatureEnabled) {
+            Log.d(LOG_TAG, "SHealth should be upgraded");
+            Intent intent = new Intent(Intent.ACTION_VIEW, Uri.parse(STORE_URL));
+            this.startActivity(intent);
             finish();
             return;
+        }
+
+        try {
+            mTrackerManager = new TrackerManager(this);
+            mTrackerTileManager = new TrackerTileManager(this);
         } catch (IllegalArgumentException e) {
             Log.e(LOG_TAG, e.toString());
             Toast.makeText(this, e.toString(), Toast.LENGTH_LONG).show();
@@ -81,152 +241,177 @@ public class MainActivity extends Activity {
             return;
         }
 
-        mRemoveButton = (Button) findViewById(R.id.btn_remove);
-        mTileIdsTextView = (TextView) findViewById(R.id.txt_state);
+        updateRemoveButton();
+        syncIfStale();
 
-        mRemoveButton.setOnClickListener(new View.OnClickListener() {
+        mLauncherAdapter.setTrackerManager(mTrackerManager);
+    }
+
+    private void loadState() {
+        final Context appContext = getApplicationContext();
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        Thread thread = new Thread(new Runnable() {
             @Override
-            public void onClick(View view) {
-                try {
-                    ArrayList<String> postedTileIds = mTrackerTileManager.getPostedTrackerTileIds(MY_TRACKER_ID);
-                    if (postedTileIds != null) {
-                        for (String tileId : postedTileIds) {
-                            mTrackerTileManager.remove(MY_TRACKER_ID, tileId);
+            public void run() {
+                final PostedTileRegistry postedTileRegistry = PostedTileRegistry.getInstance(appContext);
+                final TileStateStore tileStateStore = TileStateStore.getInstance(appContext);
+                TrackerManifestIndex manifestIndex = TrackerManifestIndex.getInstance(appContext);
+                final String[] trackerIds = new String[manifestIndex.getTrackerCount()];
+                for (int i = 0; i < trackerIds.length; i++) {
+                    trackerIds[i] = manifestIndex.getTrackerId(i);
+                }
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isFinishing()) {
+                            onStateLoaded(postedTileRegistry, tileStateStore, trackerIds);
                         }
-                        updatePostedTileIdsInfo();
                     }
-                } catch (IllegalArgumentException e) {
-                    Log.e(LOG_TAG, e.toString());
-                }
+                });
             }
-        });
+        }, LOG_TAG);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void onStateLoaded(PostedTileRegistry postedTileRegistry, TileStateStore tileStateStore,
+            String[] trackerIds) {
+        mPostedTileRegistry = postedTileRegistry;
+        mTileStateStore = tileStateStore;
+        mTrackerIds = trackerIds;
 
-        addStressMenu();
-        addWaterMenu();
+        if (mStarted) {
+            showTiles();
+        }
+        if (mTrackerTileManager != null) {
+            syncIfStale();
+        }
     }
 
     @Override
-    protected void onResume() {
-        super.onResume();
-        updatePostedTileIdsInfo();
+    protected void onStart() {
+        super.onStart();
+        mStarted = true;
+        if (mPostedTileRegistry != null) {
+            showTiles();
+        }
     }
 
-    // Update Posted Tile Ids Information
-    private void updatePostedTileIdsInfo() {
-        ArrayList<String> tileIds = new ArrayList<String>();
-        try {
-            tileIds = mTrackerTileManager.getPostedTrackerTileIds(MY_TRACKER_ID);
-
-            SpannableStringBuilder builder = new SpannableStringBuilder();
-            if (tileIds.isEmpty()) {
-                builder.append("No posted TrackerTile");
-                mRemoveButton.setEnabled(false);
-            } else {
-                int start = builder.toString().length();
-                for (String tileId : tileIds) {
-                    builder.append(tileId);
-                    builder.append(" ");
-                }
-                int end = builder.toString().length();
-                builder.setSpan(new ForegroundColorSpan(Color.RED), start, end,
-                        Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-
-                mRemoveButton.setEnabled(true);
-            }
+    // Catches up with the changes made while stopped, only differing tiles are rendered again
+    private void showTiles() {
+        Set<String> tiles = new HashSet<String>(mShownTiles);
+        for (String trackerId : mTrackerIds) {
+            TileStateStream.getInstance().subscribe(trackerId, mTileStateObserver);
+            tiles.addAll(toKeys(trackerId, mPostedTileRegistry.getPostedTileIds(trackerId)));
+        }
+        renderTiles(tiles);
+    }
 
-            mTileIdsTextView.setText(builder.toString());
-        } catch (IllegalArgumentException e) {
-            Log.e(LOG_TAG, e.toString());
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (mTrackerTileManager != null) {
+            syncIfStale();
         }
     }
 
-    private void addStressMenu() {
-        TrackerInfo trackerInfo = mTrackerManager.getTrackerInfo(TrackerManager.TrackerId.STRESS);
+    @Override
+    protected void onStop() {
+        mStarted = false;
+        TileStateStream.getInstance().unsubscribe(mTileStateObserver);
+        super.onStop();
+    }
 
-        if(trackerInfo == null) {
+    private void syncIfStale() {
+        if (mPostedTileRegistry == null) {
             return;
         }
+        for (String trackerId : mTrackerIds) {
+            mPostedTileRegistry.syncIfStale(mTrackerTileManager, trackerId, mPostedTilesListener);
+        }
+    }
 
-        ((ImageView)findViewById(R.id.stress_icon_img)).setImageDrawable(trackerInfo.getIcon());
-        ((TextView)findViewById(R.id.stress_service_name)).setText(trackerInfo.getDisplayName());
-
-        findViewById(R.id.btn_stress_track).setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                try {
-                    mTrackerManager.startActivity((Activity)v.getContext(), TrackerManager.TrackerId.STRESS);
-                } catch (IllegalArgumentException e) {
-                    Toast.makeText(getApplicationContext(), e.toString(), Toast.LENGTH_SHORT).show();
-                } catch (IllegalStateException e) {
-                    Toast.makeText(getApplicationContext(), e.toString(), Toast.LENGTH_SHORT).show();
-                }
+    // Renders the given tiles again where their text differs from the shown one
+    private void renderTiles(Collection<String> tiles) {
+        Editable text = mTileIdsTextView.getEditableText();
+        for (String tile : tiles) {
+            String label = getTileLabel(tile);
+            int index = Collections.binarySearch(mShownTiles, tile);
+            if (index < 0 ? label == null : label != null && label.equals(mShownLabels.get(index))) {
+                continue;
             }
-        });
 
-        findViewById(R.id.btn_stress_trend).setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                try {
-                    mTrackerManager.startActivity((Activity)v.getContext(), TrackerManager.TrackerId.STRESS, TrackerManager.Destination.TRENDS);
-                } catch (IllegalArgumentException e) {
-                    Toast.makeText(getApplicationContext(), e.toString(), Toast.LENGTH_SHORT).show();
-                } catch (IllegalStateException e) {
-                    Toast.makeText(getApplicationContext(), e.toString(), Toast.LENGTH_SHORT).show();
+            if (mShowingPlaceholder) {
+                text.clear();
+                mShowingPlaceholder = false;
+            }
+            if (index >= 0) {
+                int start = getLabelOffset(index);
+                int end = start + mShownLabels.get(index).length();
+                if (label == null) {
+                    text.delete(start, end);
+                    mShownTiles.remove(index);
+                    mShownLabels.remove(index);
+                } else {
+                    text.replace(start, end, highlight(label));
+                    mShownLabels.set(index, label);
                 }
+            } else {
+                index = -index - 1;
+                text.insert(getLabelOffset(index), highlight(label));
+                mShownTiles.add(index, tile);
+                mShownLabels.add(index, label);
             }
-        });
-    }
+        }
 
-    private void addWaterMenu() {
-        TrackerInfo trackerInfo = mTrackerManager.getTrackerInfo(TrackerManager.TrackerId.WATER);
+        if (mShownTiles.isEmpty() && !mShowingPlaceholder) {
+            text.replace(0, text.length(), NO_POSTED_TILE_TEXT);
+            mShowingPlaceholder = true;
+        }
+        updateRemoveButton();
+    }
 
-        if(trackerInfo == null) {
-            return;
+    // Returns the text of a posted tile, or null if it is not posted
+    private String getTileLabel(String tile) {
+        int separator = tile.indexOf('/');
+        String trackerId = tile.substring(0, separator);
+        String tileId = tile.substring(separator + 1);
+        if (!mPostedTileRegistry.isPosted(trackerId, tileId)) {
+            return null;
         }
+        // The tracker is only named once there are several
+        String name = mTrackerIds.length > 1 ? tile : tileId;
+        if (mTileStateStore.isLoggedIn(trackerId, tileId)) {
+            return name + "(" + mTileStateStore.getContentValue(trackerId, tileId) + ") ";
+        }
+        return name + " ";
+    }
 
-        ((ImageView)findViewById(R.id.water_icon_img)).setImageDrawable(trackerInfo.getIcon());
-        ((TextView)findViewById(R.id.water_service_name)).setText(trackerInfo.getDisplayName());
+    // Tracker ids do not contain '/', so the key splits at the first one
+    private static List<String> toKeys(String trackerId, Collection<String> tileIds) {
+        List<String> keys = new ArrayList<String>(tileIds.size());
+        for (String tileId : tileIds) {
+            keys.add(trackerId + '/' + tileId);
+        }
+        return keys;
+    }
 
-        findViewById(R.id.btn_water_trend).setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                try {
-                    mTrackerManager.startActivity((Activity)v.getContext(), TrackerManager.TrackerId.WATER,
-                            TrackerManager.Destination.TRACK);
-                } catch (IllegalArgumentException e) {
-                    Toast.makeText(getApplicationContext(), e.toString(), Toast.LENGTH_SHORT).show();
-                } catch (IllegalStateException e) {
-                    Toast.makeText(getApplicationContext(), e.toString(), Toast.LENGTH_SHORT).show();
-                }
-            }
-        });
+    private int getLabelOffset(int index) {
+        int offset = 0;
+        for (int i = 0; i < index; i++) {
+            offset += mShownLabels.get(i).length();
+        }
+        return offset;
+    }
 
-        findViewById(R.id.btn_water_track).setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                try {
-                    mTrackerManager.startActivity((Activity)v.getContext(), TrackerManager.TrackerId.WATER,
-                            TrackerManager.Destination.TRENDS);
-                } catch (IllegalArgumentException e) {
-                    Toast.makeText(getApplicationContext(), e.toString(), Toast.LENGTH_SHORT).show();
-                } catch (IllegalStateException e) {
-                    Toast.makeText(getApplicationContext(), e.toString(), Toast.LENGTH_SHORT).show();
-                }
-            }
-        });
+    private static Spannable highlight(String label) {
+        SpannableString spannable = new SpannableString(label);
+        spannable.setSpan(new ForegroundColorSpan(Color.RED), 0, label.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        return spannable;
+    }
 
-        findViewById(R.id.btn_water_target).setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                try {
-                    mTrackerManager.startActivity((Activity)v.getContext(), TrackerManager.TrackerId.WATER,
-                            TrackerManager.Destination.TARGET);
-                } catch (IllegalArgumentException e) {
-                    Toast.makeText(getApplicationContext(), e.toString(), Toast.LENGTH_SHORT).show();
-                } catch (IllegalStateException e) {
-                    Toast.makeText(getApplicationContext(), e.toString(), Toast.LENGTH_SHORT).show();
-                }
-            }
-        });
+    private void updateRemoveButton() {
+        mRemoveButton.setEnabled(mTrackerTileManager != null && !mShownTiles.isEmpty());
     }
 }
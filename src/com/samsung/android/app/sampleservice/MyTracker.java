@@ -23,230 +23,261 @@ import com.samsung.android.sdk.shealth.tracker.TrackerTile;
 import com.samsung.android.sdk.shealth.tracker.TrackerTileManager;
 
 import android.content.Context;
-import android.content.Intent;
-import android.content.SharedPreferences;
 import android.content.res.Resources.NotFoundException;
-import android.graphics.Color;
-import android.util.Base64;
-import android.util.Log;
 
-import java.security.SecureRandom;
 import java.util.Date;
 
 public class MyTracker implements TrackerEventListener {
 
-    // Manager of TrackerTile
-    private TrackerTileManager mTrackerTileManager;
+    // Manager of TrackerTile, shared through TrackerControllerRegistry
+    private volatile TrackerTileManager mTrackerTileManager;
+
+    // Coalesces posts of the same tile
+    private final TilePostScheduler mPostScheduler = TilePostScheduler.getInstance();
 
     private static final String MY_TILE_ID = "sample_tile";
-    private int mTemplate = TrackerTile.TRACKER_TILE_TYPE_1;
-
-    private static final String SHARED_PREFERENCE_NAME = "tile_content";
-    private static final String SHARED_PREFERENCE_CONTENT_VALUE_KEY = "content_value";
-    private static final String SHARED_PREFERENCE_LOGIN_KEY = "log_in";
-    private static final String VALIDATION_KEY = "validation_key";
-    private static String VALIDATION_VALUE = "";
-
-    static {
-        byte[] validationValueBytes = new byte[32];
-        new SecureRandom().nextBytes(validationValueBytes);
-        VALIDATION_VALUE = Base64.encodeToString(validationValueBytes, Base64.DEFAULT);
-    }
 
-    private static final String LOG_TAG = "PluginTracker";
+    private static final long DATE_SIGNATURE_RESOLUTION_MS = 60 * 1000;
 
     public MyTracker() {
         // An empty constructor should be created.
     }
 
     public MyTracker(Context context) {
-        Log.d(LOG_TAG, "MyTracker()");
-
-        if (mTrackerTileManager == null) {
-            try {
-                mTrackerTileManager = new TrackerTileManager(context);
-            } catch (IllegalArgumentException e) {
-                Log.d(LOG_TAG, "TrackerTileManager Constructor - IllegalArgumentException " + e.toString());
-            }
+        if (TrackerTrace.DEBUG) {
+            TrackerTrace.d(TrackerTrace.Event.MY_TRACKER_CREATED, null);
         }
+
+        mTrackerTileManager = TrackerControllerRegistry.getInstance().getTileManager(context);
     }
 
     @Override
     public void onCreate(Context context, String trackerId) {
-        Log.d(LOG_TAG, "onCreate(" + trackerId + ")");
+        if (TrackerTrace.DEBUG) {
+            TrackerTrace.d(TrackerTrace.Event.ON_CREATE, trackerId);
+        }
+        long startTime = TrackerMetrics.start();
 
         if (mTrackerTileManager == null) {
-            try {
-                mTrackerTileManager = new TrackerTileManager(context);
-            } catch (IllegalArgumentException e) {
-                Log.d(LOG_TAG, "TrackerTileManager - IllegalArgumentException " + e.toString());
-            }
+            mTrackerTileManager = TrackerControllerRegistry.getInstance().getTileManager(context);
         }
+        // MyTrackerService posts through this instance from now on
+        TrackerControllerRegistry.getInstance().register(context, trackerId, this);
+        TileRefreshScheduler.getInstance(context).start();
+
+        TrackerMetrics.record(TrackerMetrics.Timer.ON_CREATE, startTime);
     }
 
     @Override
     public void onSubscribed(Context context, String trackerId) {
-        Log.d(LOG_TAG, "onSubscribed(" + trackerId + ")");
+        if (TrackerTrace.DEBUG) {
+            TrackerTrace.d(TrackerTrace.Event.ON_SUBSCRIBED, trackerId);
+        }
+        long startTime = TrackerMetrics.start();
 
-        SharedPreferences sp = context.getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE);
-        boolean isLoggedIn = sp.getBoolean(SHARED_PREFERENCE_LOGIN_KEY, false);
+        boolean isLoggedIn = TileStateStore.getInstance(context).isLoggedIn(trackerId, MY_TILE_ID);
 
+        mPostScheduler.invalidate(trackerId, MY_TILE_ID);
+        PostedTileRegistry.getInstance(context).add(trackerId, MY_TILE_ID);
         if (isLoggedIn) {
             updateTile(context, trackerId, MY_TILE_ID);
         } else {
             postDefaultTile(context, trackerId, MY_TILE_ID);
         }
+        TileRefreshScheduler.getInstance(context).start();
+
+        TrackerMetrics.record(TrackerMetrics.Timer.ON_SUBSCRIBED, startTime);
     }
 
     @Override
     public void onUnsubscribed(Context context, String trackerId) {
-        Log.d(LOG_TAG, "onUnsubscribed(" + trackerId + ")");
+        if (TrackerTrace.DEBUG) {
+            TrackerTrace.d(TrackerTrace.Event.ON_UNSUBSCRIBED, trackerId);
+        }
+        long startTime = TrackerMetrics.start();
+
+        // Content values are kept in case the tracker is subscribed again
+        TileStateStore.getInstance(context).setLoggedIn(trackerId, false);
+        PostedTileRegistry.getInstance(context).clear(trackerId);
+        TilePostQueue.getInstance(context).clear(trackerId);
+        TrackerControllerRegistry.getInstance().unregister(context, trackerId);
+        TileRefreshScheduler.getInstance(context).stopIfIdle();
 
-        SharedPreferences sp = context.getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE);
-        sp.edit().putBoolean(SHARED_PREFERENCE_LOGIN_KEY, false).apply();
+        TrackerMetrics.record(TrackerMetrics.Timer.ON_UNSUBSCRIBED, startTime);
     }
 
     @Override
     public void onPaused(Context context, String trackerId) {
-        Log.d(LOG_TAG, "onPaused(" + trackerId + ")");
+        if (TrackerTrace.DEBUG) {
+            TrackerTrace.d(TrackerTrace.Event.ON_PAUSED, trackerId);
+        }
+        long startTime = TrackerMetrics.start();
+
+        TrackerMetrics.record(TrackerMetrics.Timer.ON_PAUSED, startTime);
     }
 
     @Override
     public void onTileRequested(Context context, String trackerId, String tileId) {
-        Log.d(LOG_TAG, "onTileRequested(" + trackerId + ", " + tileId + ")");
+        if (TrackerTrace.DEBUG) {
+            TrackerTrace.d(TrackerTrace.Event.ON_TILE_REQUESTED, trackerId, tileId);
+        }
+        long startTime = TrackerMetrics.start();
 
-        SharedPreferences sp = context.getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE);
-        boolean isLoggedIn = sp.getBoolean(SHARED_PREFERENCE_LOGIN_KEY, false);
+        if (tileId == null) {
+            tileId = MY_TILE_ID;
+        }
+
+        boolean isLoggedIn = TileStateStore.getInstance(context).isLoggedIn(trackerId, tileId);
 
+        // SHealth expects the tile to be posted even if its content did not change
+        mPostScheduler.invalidate(trackerId, tileId);
+        PostedTileRegistry.getInstance(context).add(trackerId, tileId);
         if (isLoggedIn) {
             updateTile(context, trackerId, tileId);
         } else {
             postDefaultTile(context, trackerId, tileId);
         }
+
+        TrackerMetrics.record(TrackerMetrics.Timer.ON_TILE_REQUESTED, startTime);
     }
 
     @Override
     public void onTileRemoved(Context context, String trackerId, String tileId) {
-        Log.d(LOG_TAG, "onTileRemoved(" + trackerId + ", " + tileId + ")");
+        if (TrackerTrace.DEBUG) {
+            TrackerTrace.d(TrackerTrace.Event.ON_TILE_REMOVED, trackerId, tileId);
+        }
+        long startTime = TrackerMetrics.start();
+
+        mPostScheduler.invalidate(trackerId, tileId);
+        PostedTileRegistry.getInstance(context).remove(trackerId, tileId);
+        TileStateStore.getInstance(context).removeTile(trackerId, tileId);
+        TilePostQueue.getInstance(context).remove(trackerId, tileId);
+
+        TrackerMetrics.record(TrackerMetrics.Timer.ON_TILE_REMOVED, startTime);
     }
 
-    private void postDefaultTile(Context context, String trackerId, String tileId) {
+    void postDefaultTile(Context context, String trackerId, String tileId) {
+        long startTime = TrackerMetrics.start();
         TrackerTile myTrackerTile;
-        Intent launchIntent;
 
         if (tileId == null) {
             tileId = MY_TILE_ID;
         }
 
-        try {
-            // Create Intent to do an action
-            // when the tracker tile is clicked
-            launchIntent = new Intent(context, MainActivity.class);
-
-            // Create Intent to do an action
-            // when the button on this tile is clicked
-            Intent serviceIntent = new Intent(context, MyTrackerService.class);
-            serviceIntent.putExtra(SHARED_PREFERENCE_LOGIN_KEY, true);
-
-            SharedPreferences sp = context.getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE);
-            String validationKey = sp.getString(VALIDATION_KEY, "");
-            if (validationKey.isEmpty()) {
-                validationKey = VALIDATION_VALUE;
-                sp.edit().putString(VALIDATION_KEY, validationKey).apply();
-            }
-
-            serviceIntent.putExtra(VALIDATION_KEY, validationKey);
+        if (deferPost(context, trackerId, tileId)) {
+            TrackerMetrics.record(TrackerMetrics.Timer.POST_DEFAULT_TILE, startTime);
+            return;
+        }
 
-            // Set template
-            mTemplate = TrackerTile.TRACKER_TILE_TYPE_1;
+        try {
+            TileBlueprint blueprint = TileBlueprint.getDefaultTile(context);
 
-            // Create TrackerTile and set each values and intents
-            myTrackerTile = new TrackerTile(context, trackerId, tileId, mTemplate);
+            // Set template, kept local as the instance is shared between threads
+            int template = blueprint.getTemplate();
 
-            // Set Title
-            myTrackerTile.setTitle(R.string.tracker_display_name)
-                    // Set Icon resource
-                    .setIcon(R.drawable.tracker_icon)
-                    // Set content color
-                    .setContentColor(context.getResources().getColor(R.color.tracker_content_color))
-                    // Set content intent
-                    .setContentIntent(TrackerTile.INTENT_TYPE_ACTIVITY, launchIntent)
-                    // Set button intent
-                    .setButtonIntent("START", TrackerTile.INTENT_TYPE_SERVICE, serviceIntent);
+            // Create TrackerTile from the precompiled template
+            myTrackerTile = blueprint.build(context, trackerId, tileId, 0, 0, null);
 
-            if (mTrackerTileManager != null) {
-                mTrackerTileManager.post(myTrackerTile);
-            }
+            mPostScheduler.schedule(mTrackerTileManager, trackerId, tileId, String.valueOf(template), myTrackerTile);
 
         } catch (IllegalArgumentException e) {
-            Log.d(LOG_TAG,
-                    "MyTracker postDefaultTile(" + trackerId + ", " + tileId + ") IllegalArgumentException " + e.toString());
+            if (TrackerTrace.WARN) {
+                TrackerTrace.w(TrackerTrace.Event.TILE_BUILD_FAILED, trackerId, tileId, e);
+            }
+            TrackerMetrics.increment(TrackerMetrics.Counter.TILE_BUILD_FAILED);
         } catch (NotFoundException e) {
-            Log.d(LOG_TAG, "MyTracker postDefaultTile(" + trackerId + ", " + tileId + ") NotFoundException " + e.toString());
+            if (TrackerTrace.WARN) {
+                TrackerTrace.w(TrackerTrace.Event.TILE_BUILD_FAILED, trackerId, tileId, e);
+            }
+            TrackerMetrics.increment(TrackerMetrics.Counter.TILE_BUILD_FAILED);
         }
+
+        TrackerMetrics.record(TrackerMetrics.Timer.POST_DEFAULT_TILE, startTime);
     }
 
     public void updateTile(Context context, String trackerId, String tileId) {
-        Log.d(LOG_TAG, "updateTile(" + trackerId + ", " + tileId + ")");
-
-        SharedPreferences sp = context.getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE);
-        int tileContentValue = sp.getInt(SHARED_PREFERENCE_CONTENT_VALUE_KEY, 0);
+        if (TrackerTrace.DEBUG) {
+            TrackerTrace.d(TrackerTrace.Event.UPDATE_TILE, trackerId, tileId);
+        }
+        long startTime = TrackerMetrics.start();
 
         TrackerTile myTrackerTile;
-        Intent launchIntent;
 
         if (tileId == null) {
             tileId = MY_TILE_ID;
         }
 
+        if (deferPost(context, trackerId, tileId)) {
+            TrackerMetrics.record(TrackerMetrics.Timer.UPDATE_TILE, startTime);
+            return;
+        }
+
+        int tileContentValue = TileStateStore.getInstance(context).getContentValue(trackerId, tileId);
+        long now = System.currentTimeMillis();
+        long todayTotal = TileRollups.getInstance(context).getTotal(trackerId, tileId, TileRollups.Granularity.DAY, now);
+
         try {
-            // Create Intent to do an action
-            // when the tracker tile is clicked
-            launchIntent = new Intent(context, MainActivity.class);
-
-            // Create Intent to do an action
-            // when the button on this tile is clicked
-            Intent serviceIntent = new Intent(context, MyTrackerService.class);
-
-            String validationKey = sp.getString(VALIDATION_KEY, "");
-            if (validationKey.isEmpty()) {
-                validationKey = VALIDATION_VALUE;
-                sp.edit().putString(VALIDATION_KEY, validationKey).apply();
-            }
+            TileBlueprint blueprint = TileBlueprint.getUpdateTile(context);
 
-            serviceIntent.putExtra(VALIDATION_KEY, validationKey);
-
-            // Set template
-            mTemplate = TrackerTile.TRACKER_TILE_TYPE_3;
-
-            // Create TrackerTile and set each values and intents
-            myTrackerTile = new TrackerTile(context, trackerId, tileId, mTemplate);
-
-            // Set Title
-            myTrackerTile.setTitle(R.string.tracker_display_name)
-                    // Set Icon resource
-                    .setIcon(R.drawable.tracker_icon_30x30)
-                    // Set content value
-                    .setContentValue(String.valueOf(tileContentValue))
-                    // Set content unit
-                    .setContentUnit("LBS")
-                    // Set Date text
-                    .setDate(new Date())
-                    // Set content color
-                    .setContentColor(Color.parseColor("#7CB342"))
-                    // Set content intent
-                    .setContentIntent(TrackerTile.INTENT_TYPE_ACTIVITY, launchIntent)
-                    // Set button intent
-                    .setButtonIntent("UPDATE", TrackerTile.INTENT_TYPE_SERVICE, serviceIntent);
-
-            if (mTrackerTileManager != null) {
-                mTrackerTileManager.post(myTrackerTile);
-            }
+            // Set template, kept local as the instance is shared between threads
+            int template = blueprint.getTemplate();
+
+            // Create TrackerTile from the precompiled template with the current content value
+            myTrackerTile = blueprint.build(context, trackerId, tileId, tileContentValue, todayTotal, new Date(now));
+
+            // The tile is dated with the time it is built, to the minute, so a periodic refresh posts
+            // it again and today's total starts over at midnight
+            mPostScheduler.schedule(mTrackerTileManager, trackerId, tileId, template + ":" + tileContentValue
+                    + ":" + todayTotal + ":" + now / DATE_SIGNATURE_RESOLUTION_MS, myTrackerTile);
 
         } catch (IllegalArgumentException e) {
-            Log.d(LOG_TAG, "MyTracker updateTile(" + trackerId + ", " + tileId + ") IllegalArgumentException " + e.toString());
+            if (TrackerTrace.WARN) {
+                TrackerTrace.w(TrackerTrace.Event.TILE_BUILD_FAILED, trackerId, tileId, e);
+            }
+            TrackerMetrics.increment(TrackerMetrics.Counter.TILE_BUILD_FAILED);
         } catch (NotFoundException e) {
-            Log.d(LOG_TAG, "MyTracker updateTile(" + trackerId + ", " + tileId + ") NotFoundException " + e.toString());
+            if (TrackerTrace.WARN) {
+                TrackerTrace.w(TrackerTrace.Event.TILE_BUILD_FAILED, trackerId, tileId, e);
+            }
+            TrackerMetrics.increment(TrackerMetrics.Counter.TILE_BUILD_FAILED);
+        }
+
+        TrackerMetrics.record(TrackerMetrics.Timer.UPDATE_TILE, startTime);
+    }
+
+    /**
+     * Builds the tile for the current state of trackerId and tileId, as postDefaultTile or updateTile
+     * would post it.
+     */
+    static TrackerTile buildTile(Context context, String trackerId, String tileId) {
+        TileStateStore store = TileStateStore.getInstance(context);
+        if (!store.isLoggedIn(trackerId, tileId)) {
+            return TileBlueprint.getDefaultTile(context).build(context, trackerId, tileId, 0, 0, null);
+        }
+
+        long now = System.currentTimeMillis();
+        return TileBlueprint.getUpdateTile(context).build(context, trackerId, tileId,
+                store.getContentValue(trackerId, tileId),
+                TileRollups.getInstance(context).getTotal(trackerId, tileId, TileRollups.Granularity.DAY, now),
+                new Date(now));
+    }
+
+    // Queues the post instead when SHealth cannot be reached, it is built again on replay
+    private boolean deferPost(Context context, String trackerId, String tileId) {
+        TilePostQueue postQueue = TilePostQueue.getInstance(context);
+        if (mTrackerTileManager == null) {
+            // SHealth may have become reachable since
+            mTrackerTileManager = TrackerControllerRegistry.getInstance().getTileManager(context);
+        }
+        if (mTrackerTileManager == null) {
+            TrackerMetrics.increment(TrackerMetrics.Counter.POST_NO_MANAGER);
+            postQueue.defer(trackerId, tileId);
+            return true;
+        }
+        if (postQueue.isBackingOff()) {
+            postQueue.defer(trackerId, tileId);
+            return true;
         }
+        return false;
     }
 }
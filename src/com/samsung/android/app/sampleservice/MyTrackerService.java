@@ -20,77 +20,265 @@ package com.samsung.android.app.sampleservice;
 
 import com.samsung.android.sdk.shealth.tracker.TrackerTileManager;
 
-import android.app.IntentService;
+import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
-import android.util.Log;
+import android.os.IBinder;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 
 /**
  * This class receives event from SHealth.
+ * Intents for the same tile are handled in order while different tiles are handled in parallel.
  * @hide This class contains internal implementation for SHealth application
  */
-public final class MyTrackerService extends IntentService {
-
-    private static final String LOG_TAG = "SampleService";
+public final class MyTrackerService extends Service {
 
-    private static final String SHARED_PREFERENCE_NAME = "tile_content";
-    private static final String SHARED_PREFERENCE_CONTENT_VALUE_KEY = "content_value";
     private static final String SHARED_PREFERENCE_LOGIN_KEY = "log_in";
     private static final String VALIDATION_KEY = "validation_key";
 
+    private static final int WORKER_THREAD_COUNT = 4;
+    private static final int STRIPE_COUNT = 16;
+    private static final int STRIPE_QUEUE_LIMIT = 32;
+
+    // Each tile may send 5 intents at once, then 4 per second
+    private static final int ADMISSION_BURST = 5;
+    private static final long ADMISSION_REFILL_INTERVAL_MS = 250;
+    private static final int ADMISSION_MAX_TILES = 256;
+
+    // Shared by all service instances so queued work survives a service restart
+    private static StripedExecutor sExecutor;
+
+    private volatile int mLastStartId;
+
+    private TileAdmission mAdmission;
+
     /**
      * Constructs a TrackerTileService object.
      */
     public MyTrackerService() {
-        super(LOG_TAG);
+    }
+
+    static synchronized StripedExecutor getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = new StripedExecutor(WORKER_THREAD_COUNT, STRIPE_COUNT, STRIPE_QUEUE_LIMIT,
+                    StripedExecutor.OverflowPolicy.MERGE);
+        }
+        return sExecutor;
     }
 
     @Override
-    protected void onHandleIntent(Intent intent) {
+    public void onCreate() {
+        super.onCreate();
+        mAdmission = new TileAdmission(ADMISSION_BURST, ADMISSION_REFILL_INTERVAL_MS, ADMISSION_MAX_TILES,
+                new TileAdmission.Sink() {
+                    @Override
+                    public boolean submit(String trackerId, String tileId, String validationValue,
+                            boolean isLogInRequest, int increments) {
+                        return getExecutor().execute(
+                                new TileIntentTask(trackerId, tileId, validationValue, isLogInRequest, increments));
+                    }
+                });
+        getExecutor().setIdleListener(new StripedExecutor.IdleListener() {
+            @Override
+            public void onIdle() {
+                // Folded increments are still to come
+                if (mAdmission.getPendingCount() > 0) {
+                    return;
+                }
+                // Stops only if no newer start request arrived in the meantime
+                stopSelf(mLastStartId);
+            }
+        });
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        mLastStartId = startId;
+
+        TileIntentTask task = parseIntent(intent);
+        int admission = TileAdmission.FOLDED;
+        if (task != null && !ValidationKeyVerifier.getInstance(this).verify(task.mValidationValue)) {
+            // Only verified requests take a token, so a wrong key cannot hold off valid taps
+            if (TrackerTrace.WARN) {
+                TrackerTrace.w(TrackerTrace.Event.SERVICE_VALIDATION_FAILED, task.mTrackerId, task.mTileId, null);
+            }
+            TrackerMetrics.increment(TrackerMetrics.Counter.ADMISSION_REJECTED);
+        } else if (task != null) {
+            admission = mAdmission.offer(task.mTrackerId, task.mTileId, task.mValidationValue, task.mIsLogInRequest,
+                    task.mIncrements);
+        }
+
+        if (admission != TileAdmission.ADMITTED && getExecutor().getPendingCount() == 0
+                && mAdmission.getPendingCount() == 0) {
+            stopSelf(startId);
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    /**
+     * Handles the intent synchronously on the calling thread, bypassing the executor.
+     */
+    void onHandleIntent(Intent intent) {
+        TileIntentTask task = parseIntent(intent);
+        if (task != null) {
+            task.run();
+        }
+    }
+
+    private TileIntentTask parseIntent(Intent intent) {
 
         if (intent == null) {
-            return;
+            return null;
         }
 
         String trackerId = intent.getStringExtra(TrackerTileManager.EXTRA_TRACKER_ID);
         if (trackerId == null) {
-            return;
+            TrackerMetrics.increment(TrackerMetrics.Counter.SERVICE_INTENT_INVALID);
+            return null;
         }
-        Log.d(LOG_TAG, "tracker id : " + trackerId);
 
         String tileId = intent.getStringExtra(TrackerTileManager.EXTRA_TILE_ID);
         if (tileId == null) {
-            return;
+            TrackerMetrics.increment(TrackerMetrics.Counter.SERVICE_INTENT_INVALID);
+            return null;
         }
-        Log.d(LOG_TAG, "tile id : " + tileId);
+
         String validationValue = intent.getStringExtra(VALIDATION_KEY);
-        SharedPreferences sp = getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE);
-        String validationSavedValue = sp.getString(VALIDATION_KEY, "");
+        boolean isLogInRequest = intent.getBooleanExtra(SHARED_PREFERENCE_LOGIN_KEY, false);
+
+        return new TileIntentTask(trackerId, tileId, validationValue, isLogInRequest, 1);
+    }
 
-        if (validationValue.isEmpty() || !validationValue.equals(validationSavedValue)) {
-            Log.d(LOG_TAG, "invalid validation value");
+    private static void handleTileIntent(Context context, String trackerId, String tileId, String validationValue,
+            boolean isLogInRequest, int increments) {
+        long startTime = TrackerMetrics.start();
+        if (TrackerTrace.DEBUG) {
+            TrackerTrace.d(TrackerTrace.Event.SERVICE_INTENT, trackerId, tileId, isLogInRequest ? 1 : 0);
+        }
+        ShealthInitializer.getInstance().await(context);
+
+        if (!ValidationKeyVerifier.getInstance(context).verify(validationValue)) {
+            if (TrackerTrace.WARN) {
+                TrackerTrace.w(TrackerTrace.Event.SERVICE_VALIDATION_FAILED, trackerId, tileId, null);
+            }
+            TrackerMetrics.increment(TrackerMetrics.Counter.SERVICE_VALIDATION_FAILED);
+            TrackerMetrics.record(TrackerMetrics.Timer.SERVICE_INTENT, startTime);
             return;
         }
 
-        boolean isLogInRequest = intent.getBooleanExtra(SHARED_PREFERENCE_LOGIN_KEY, false);
-        Log.d(LOG_TAG, "log in request : " + isLogInRequest);
+        applyTileIntent(context, trackerId, tileId, isLogInRequest, increments);
 
+        TrackerMetrics.record(TrackerMetrics.Timer.SERVICE_INTENT, startTime);
+    }
+
+    // Applies a verified request to the tile state and posts the tile
+    private static void applyTileIntent(Context context, String trackerId, String tileId, boolean isLogInRequest,
+            int increments) {
+        TileStateStore store = TileStateStore.getInstance(context);
         if (isLogInRequest) {
-            sp.edit().putBoolean(SHARED_PREFERENCE_LOGIN_KEY, true).apply();
+            store.setLoggedIn(trackerId, tileId, true);
 
         } else {
-            int tileContent = sp.getInt(SHARED_PREFERENCE_CONTENT_VALUE_KEY, 0) + 1;
-            Log.d(LOG_TAG, "content value : " + String.valueOf(tileContent));
-            sp.edit().putInt(SHARED_PREFERENCE_CONTENT_VALUE_KEY, tileContent).apply();
+            int tileContent = store.addContentValue(trackerId, tileId, increments);
+            TileValueLog.getInstance(context).append(trackerId, tileId, increments);
+            if (TrackerTrace.DEBUG) {
+                TrackerTrace.d(TrackerTrace.Event.SERVICE_CONTENT_VALUE, trackerId, tileId, tileContent);
+            }
         }
 
-        MyTracker tracker = new MyTracker(this);
-        tracker.updateTile(this, trackerId, tileId);
+        TrackerControllerRegistry.getInstance().getTracker(context, trackerId).updateTile(context, trackerId, tileId);
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        TrackerMetrics.dump(writer);
+        TrackerTrace.dump(writer);
+
+        StripedExecutor executor = getExecutor();
+        writer.println("StripedExecutor: pending=" + executor.getPendingCount());
+        for (int i = 0; i < executor.getStripeCount(); i++) {
+            if (executor.getExecutedCount(i) == 0 && executor.getQueueDepth(i) == 0) {
+                continue;
+            }
+            writer.println("  stripe " + i + " : depth=" + executor.getQueueDepth(i)
+                    + " maxDepth=" + executor.getMaxQueueDepth(i)
+                    + " executed=" + executor.getExecutedCount(i)
+                    + " merged=" + executor.getMergedCount(i)
+                    + " rejected=" + executor.getRejectedCount(i)
+                    + " dropped=" + executor.getDroppedCount(i)
+                    + " avgWaitMs=" + executor.getAverageWaitMillis(i)
+                    + " maxWaitMs=" + executor.getMaxWaitMillis(i));
+        }
     }
 
     @Override
     public void onDestroy() {
+        getExecutor().setIdleListener(null);
+        // Folded requests were verified when offered and are applied on this thread, so the flush
+        // below persists them. The tile post itself is asynchronous.
+        final Context appContext = getApplicationContext();
+        mAdmission.close(new TileAdmission.Sink() {
+            @Override
+            public boolean submit(String trackerId, String tileId, String validationValue, boolean isLogInRequest,
+                    int increments) {
+                applyTileIntent(appContext, trackerId, tileId, isLogInRequest, increments);
+                return true;
+            }
+        });
+        // Persist pending increments before the process becomes a candidate for killing
+        TileStateStore.getInstance(this).flush();
+        TileValueLog.getInstance(this).force();
         super.onDestroy();
     }
+
+    // One or more merged button intents of a tile, run against the application context as it may
+    // outlive the service
+    private final class TileIntentTask extends StripedExecutor.Task {
+        private final Context mContext;
+        private final String mTrackerId;
+        private final String mTileId;
+        private final String mValidationValue;
+        private final boolean mIsLogInRequest;
+        private int mIncrements;
+
+        TileIntentTask(String trackerId, String tileId, String validationValue, boolean isLogInRequest,
+                int increments) {
+            super(tileId);
+            mContext = getApplicationContext();
+            mTrackerId = trackerId;
+            mTileId = tileId;
+            mValidationValue = validationValue;
+            mIsLogInRequest = isLogInRequest;
+            mIncrements = increments;
+        }
+
+        // Increments add up and a log in is idempotent, so a newer task may be folded into one
+        // queued before other tasks of the tile
+        @Override
+        protected boolean merge(StripedExecutor.Task newer) {
+            TileIntentTask other = (TileIntentTask) newer;
+            if (!mTrackerId.equals(other.mTrackerId) || mIsLogInRequest != other.mIsLogInRequest
+                    || !equals(mValidationValue, other.mValidationValue)) {
+                return false;
+            }
+            mIncrements += other.mIncrements;
+            return true;
+        }
+
+        @Override
+        public void run() {
+            handleTileIntent(mContext, mTrackerId, mTileId, mValidationValue, mIsLogInRequest, mIncrements);
+        }
+
+        private boolean equals(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
 }
@@ -0,0 +1,262 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import com.samsung.android.sdk.shealth.tracker.TrackerTileManager;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Local registry of posted tile ids per tracker.
+ * MyTracker keeps it up to date from the SHealth callbacks, so the posted tiles are known without
+ * IPC. It is reconciled with TrackerTileManager only when older than the sync interval.
+ */
+public final class PostedTileRegistry {
+
+    private static final String LOG_TAG = "PostedTileRegistry";
+
+    private static final String SHARED_PREFERENCE_NAME = "posted_tiles";
+    private static final String LAST_SYNC_KEY_PREFIX = "last_sync:";
+
+    public static final long SYNC_INTERVAL_MS = 15 * 60 * 1000;
+
+    public interface OnChangedListener {
+        /**
+         * Called on the main thread with the posted tile ids of trackerId.
+         */
+        void onPostedTilesChanged(String trackerId, List<String> tileIds);
+    }
+
+    private static PostedTileRegistry sInstance;
+
+    private final SharedPreferences mPreferences;
+    private final ConcurrentHashMap<String, Set<String>> mTileIds = new ConcurrentHashMap<String, Set<String>>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor;
+    private final TileStateStream mStream = TileStateStream.getInstance();
+
+    public static synchronized PostedTileRegistry getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PostedTileRegistry(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private PostedTileRegistry(Context context) {
+        mPreferences = context.getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE);
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, LOG_TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Returns the locally known posted tile ids of trackerId, sorted.
+     */
+    public List<String> getPostedTileIds(String trackerId) {
+        ArrayList<String> tileIds = new ArrayList<String>(tiles(trackerId));
+        Collections.sort(tileIds);
+        return tileIds;
+    }
+
+    /**
+     * Returns the ids of the trackers with posted tiles, sorted.
+     */
+    public List<String> getTrackerIds() {
+        Set<String> trackerIds = new HashSet<String>(mTileIds.keySet());
+        for (String key : mPreferences.getAll().keySet()) {
+            if (!key.startsWith(LAST_SYNC_KEY_PREFIX)) {
+                trackerIds.add(key);
+            }
+        }
+
+        ArrayList<String> posted = new ArrayList<String>();
+        for (String trackerId : trackerIds) {
+            if (!tiles(trackerId).isEmpty()) {
+                posted.add(trackerId);
+            }
+        }
+        Collections.sort(posted);
+        return posted;
+    }
+
+    public boolean isPosted(String trackerId, String tileId) {
+        return tiles(trackerId).contains(tileId);
+    }
+
+    public void add(String trackerId, String tileId) {
+        if (tiles(trackerId).add(tileId)) {
+            save(trackerId);
+            mStream.publish(trackerId, tileId);
+        }
+    }
+
+    public void remove(String trackerId, String tileId) {
+        if (tiles(trackerId).remove(tileId)) {
+            save(trackerId);
+            mStream.publish(trackerId, tileId);
+        }
+    }
+
+    public void clear(String trackerId) {
+        Set<String> tileIds = tiles(trackerId);
+        if (!tileIds.isEmpty()) {
+            List<String> removed = new ArrayList<String>(tileIds);
+            tileIds.clear();
+            save(trackerId);
+            for (String tileId : removed) {
+                mStream.publish(trackerId, tileId);
+            }
+        }
+    }
+
+    /**
+     * Reconciles the registry with SHealth in the background if the last sync is older than
+     * {@link #SYNC_INTERVAL_MS}. listener is only called if the sync ran.
+     */
+    public void syncIfStale(TrackerTileManager manager, String trackerId, OnChangedListener listener) {
+        long lastSync = mPreferences.getLong(LAST_SYNC_KEY_PREFIX + trackerId, 0);
+        long now = System.currentTimeMillis();
+        if (now - lastSync >= SYNC_INTERVAL_MS || now < lastSync) {
+            sync(manager, trackerId, listener);
+        }
+    }
+
+    /**
+     * Replaces the registry content of trackerId with the tiles SHealth reports, in the background.
+     */
+    public void sync(final TrackerTileManager manager, final String trackerId, final OnChangedListener listener) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<String> posted = manager.getPostedTrackerTileIds(trackerId);
+                    Set<String> tileIds = tiles(trackerId);
+                    Set<String> before = new HashSet<String>(tileIds);
+                    if (posted != null) {
+                        tileIds.retainAll(posted);
+                        tileIds.addAll(posted);
+                    } else {
+                        tileIds.clear();
+                    }
+                    save(trackerId);
+                    // Tiles in only one of before and after changed
+                    Set<String> changed = new HashSet<String>(before);
+                    changed.addAll(tileIds);
+                    before.retainAll(tileIds);
+                    changed.removeAll(before);
+                    for (String tileId : changed) {
+                        mStream.publish(trackerId, tileId);
+                    }
+                    mPreferences.edit().putLong(LAST_SYNC_KEY_PREFIX + trackerId, System.currentTimeMillis()).apply();
+                } catch (IllegalArgumentException e) {
+                    if (TrackerTrace.WARN) {
+                        TrackerTrace.w(TrackerTrace.Event.SYNC_FAILED, trackerId, null, e);
+                    }
+                }
+                notifyChanged(trackerId, listener);
+            }
+        });
+    }
+
+    /**
+     * Removes all posted tiles of trackerId from SHealth in one background operation.
+     * A tile SHealth did not remove stays in the registry, and the next {@link #syncIfStale}
+     * reconciles it with SHealth.
+     */
+    public void removeAll(final TrackerTileManager manager, final String trackerId, final OnChangedListener listener) {
+        final List<String> tileIds = getPostedTileIds(trackerId);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean failed = false;
+                for (String tileId : tileIds) {
+                    boolean removed = false;
+                    try {
+                        removed = manager.remove(trackerId, tileId);
+                    } catch (IllegalArgumentException e) {
+                        if (TrackerTrace.WARN) {
+                            TrackerTrace.w(TrackerTrace.Event.REMOVE_FAILED, trackerId, tileId, e);
+                        }
+                    }
+                    if (removed) {
+                        tiles(trackerId).remove(tileId);
+                        mStream.publish(trackerId, tileId);
+                    } else {
+                        failed = true;
+                    }
+                }
+                save(trackerId);
+                if (failed) {
+                    // Makes the next syncIfStale run
+                    mPreferences.edit().remove(LAST_SYNC_KEY_PREFIX + trackerId).apply();
+                }
+                notifyChanged(trackerId, listener);
+            }
+        });
+    }
+
+    private void notifyChanged(final String trackerId, final OnChangedListener listener) {
+        if (listener == null) {
+            return;
+        }
+
+        final List<String> tileIds = getPostedTileIds(trackerId);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onPostedTilesChanged(trackerId, tileIds);
+            }
+        });
+    }
+
+    private Set<String> tiles(String trackerId) {
+        Set<String> tileIds = mTileIds.get(trackerId);
+        if (tileIds == null) {
+            Set<String> loaded = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            loaded.addAll(mPreferences.getStringSet(trackerId, Collections.<String>emptySet()));
+            tileIds = mTileIds.putIfAbsent(trackerId, loaded);
+            if (tileIds == null) {
+                tileIds = loaded;
+            }
+        }
+        return tileIds;
+    }
+
+    private void save(String trackerId) {
+        mPreferences.edit().putStringSet(trackerId, new HashSet<String>(tiles(trackerId))).apply();
+    }
+}
@@ -18,23 +18,23 @@
 
 package com.samsung.android.app.sampleservice;
 
-import com.samsung.android.sdk.shealth.Shealth;
-
 import android.app.Application;
-import android.util.Log;
+import android.os.Build;
+import android.os.SystemClock;
 
 public class SampleService extends Application {
 
-    private static final String LOG_TAG = "SampleService";
-
     @Override
     public void onCreate() {
+        long startTime = SystemClock.uptimeMillis();
         super.onCreate();
-        Shealth shealth = new Shealth();
-        try {
-            shealth.initialize(this);
-        } catch (IllegalArgumentException e) {
-            Log.d(LOG_TAG, "Samsung Digital Health Initialization failed. - IllegalArgumentException " + e.toString());
-        }
+        StartupTimer.onApplicationCreate();
+
+        // Binding the SDK runs in the background so it does not delay the cold start
+        ShealthInitializer.getInstance().start(this);
+        // Started once a tracker is subscribed
+        TileRefreshScheduler.getInstance(this).setBackend(Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                ? new TileRefreshJobService.JobBackend() : new TileRefreshReceiver.AlarmBackend());
+        StartupTimer.recordPhase("application.onCreate", SystemClock.uptimeMillis() - startTime);
     }
 }
@@ -0,0 +1,229 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import com.samsung.android.sdk.shealth.Shealth;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Initializes the SHealth SDK once per process on a background thread.
+ * The result, including whether the tracker tile features are enabled, is cached and shared by
+ * the application, MainActivity, MyTracker and MyTrackerService.
+ */
+public final class ShealthInitializer {
+
+    private static final String LOG_TAG = "ShealthInitializer";
+
+    /**
+     * Outcome of the initialization.
+     */
+    public static final class Result {
+        // True if the SHealth features required by this application are enabled
+        public final boolean isFeatureEnabled;
+        // Exception thrown by the SDK, or null
+        public final RuntimeException error;
+
+        Result(boolean isFeatureEnabled, RuntimeException error) {
+            this.isFeatureEnabled = isFeatureEnabled;
+            this.error = error;
+        }
+
+        public boolean isSuccessful() {
+            return error == null && isFeatureEnabled;
+        }
+    }
+
+    public interface Callback {
+        /**
+         * Called on the main thread once the initialization finished.
+         */
+        void onInitialized(Result result);
+    }
+
+    private static final ShealthInitializer sInstance = new ShealthInitializer();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ArrayList<Callback> mCallbacks = new ArrayList<Callback>();
+    private FutureTask<Result> mFuture;
+    private Result mResult;
+    private boolean mAwaitRecorded;
+
+    public static ShealthInitializer getInstance() {
+        return sInstance;
+    }
+
+    private ShealthInitializer() {
+    }
+
+    /**
+     * Starts the initialization if it was not started yet. Never blocks.
+     */
+    public synchronized ShealthInitializer start(Context context) {
+        if (mFuture != null) {
+            return this;
+        }
+
+        final Context appContext = context.getApplicationContext();
+        mFuture = new FutureTask<Result>(new Callable<Result>() {
+            @Override
+            public Result call() {
+                Result result = initialize(appContext);
+                onFinished(result);
+                return result;
+            }
+        });
+
+        Thread thread = new Thread(mFuture, LOG_TAG);
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Returns the result, or null while the initialization has not finished. Never blocks.
+     */
+    public synchronized Result getResult() {
+        return mResult;
+    }
+
+    /**
+     * Blocks until the initialization finished and returns its result.
+     * Must not be called on the main thread. Only the first call which has to wait is recorded
+     * as the shealth.await phase, later ones return the cached result without timing or logging.
+     */
+    public Result await(Context context) {
+        FutureTask<Result> future;
+        boolean record;
+        synchronized (this) {
+            if (mResult != null) {
+                return mResult;
+            }
+            start(context);
+            future = mFuture;
+            record = !mAwaitRecorded;
+            mAwaitRecorded = true;
+        }
+
+        long startTime = SystemClock.uptimeMillis();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    return new Result(false, new IllegalStateException(e.getCause()));
+                }
+            }
+        } finally {
+            if (record) {
+                StartupTimer.recordPhase("shealth.await", SystemClock.uptimeMillis() - startTime);
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Calls back on the main thread once the initialization finished, immediately if it already
+     * has and this is called on the main thread.
+     */
+    public void whenReady(Context context, final Callback callback) {
+        final Result result;
+        synchronized (this) {
+            start(context);
+            result = mResult;
+            if (result == null) {
+                mCallbacks.add(callback);
+                return;
+            }
+        }
+
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            callback.onInitialized(result);
+        } else {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    callback.onInitialized(result);
+                }
+            });
+        }
+    }
+
+    private void onFinished(final Result result) {
+        final ArrayList<Callback> callbacks;
+        synchronized (this) {
+            mResult = result;
+            callbacks = new ArrayList<Callback>(mCallbacks);
+            mCallbacks.clear();
+        }
+
+        if (callbacks.isEmpty()) {
+            return;
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Callback callback : callbacks) {
+                    callback.onInitialized(result);
+                }
+            }
+        });
+    }
+
+    private static Result initialize(Context context) {
+        Shealth shealth = new Shealth();
+
+        long startTime = SystemClock.uptimeMillis();
+        try {
+            shealth.initialize(context);
+        } catch (RuntimeException e) {
+            // Any failure must still produce a result, or await and whenReady would never return
+            Log.d(LOG_TAG, "Samsung Digital Health Initialization failed. - " + e.toString());
+            return new Result(false, e);
+        } finally {
+            StartupTimer.recordPhase("shealth.initialize", SystemClock.uptimeMillis() - startTime);
+        }
+
+        startTime = SystemClock.uptimeMillis();
+        try {
+            boolean isFeatureEnabled = shealth.isFeatureEnabled(Shealth.FEATURE_TRACKER_TILE,
+                    Shealth.FEATURE_TRACKER_LAUNCH_EXTENDED);
+            return new Result(isFeatureEnabled, null);
+        } catch (RuntimeException e) {
+            Log.d(LOG_TAG, "isFeatureEnabled - " + e.toString());
+            return new Result(false, e);
+        } finally {
+            StartupTimer.recordPhase("shealth.isFeatureEnabled", SystemClock.uptimeMillis() - startTime);
+        }
+    }
+}
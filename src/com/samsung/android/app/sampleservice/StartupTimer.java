@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import android.app.Activity;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Measures the time to the first frame of an activity.
+ * An activity created before the main thread first went idle after Application.onCreate reports
+ * a cold start measured from Application.onCreate, any other one a warm start measured from its
+ * own onCreate. Durations of individual startup phases can be recorded as well.
+ */
+public final class StartupTimer {
+
+    private static final String LOG_TAG = "StartupTimer";
+
+    private static volatile long sProcessStartTime;
+
+    // True while the process is still handling the messages queued with its launch
+    private static volatile boolean sLaunching;
+
+    private static volatile long sColdStartMillis = -1;
+    private static volatile long sWarmStartMillis = -1;
+
+    private static final ConcurrentHashMap<String, Long> sPhases = new ConcurrentHashMap<String, Long>();
+
+    private StartupTimer() {
+    }
+
+    /**
+     * Should be called at the beginning of Application.onCreate.
+     */
+    public static void onApplicationCreate() {
+        sProcessStartTime = SystemClock.uptimeMillis();
+        sLaunching = true;
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                sLaunching = false;
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Should be called from Activity.onCreate right after setContentView.
+     */
+    public static void onActivityCreate(Activity activity) {
+        final boolean isCold = sLaunching;
+        sLaunching = false;
+        final long startTime = isCold ? sProcessStartTime : SystemClock.uptimeMillis();
+        final String name = activity.getClass().getSimpleName();
+
+        final View decorView = activity.getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                long elapsed = SystemClock.uptimeMillis() - startTime;
+                if (isCold) {
+                    sColdStartMillis = elapsed;
+                } else {
+                    sWarmStartMillis = elapsed;
+                }
+                Log.i(LOG_TAG, name + (isCold ? " cold" : " warm") + " start to first frame : " + elapsed + " ms");
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Records the duration of the named startup phase in milliseconds.
+     */
+    public static void recordPhase(String phase, long millis) {
+        sPhases.put(phase, millis);
+        Log.i(LOG_TAG, phase + " : " + millis + " ms");
+    }
+
+    /**
+     * Returns the last recorded duration of the phase in milliseconds or -1.
+     */
+    public static long getPhaseMillis(String phase) {
+        Long millis = sPhases.get(phase);
+        return millis != null ? millis : -1;
+    }
+
+    public static Map<String, Long> getPhases() {
+        return new HashMap<String, Long>(sPhases);
+    }
+
+    /**
+     * Returns the last measured cold start time in milliseconds or -1.
+     */
+    public static long getColdStartMillis() {
+        return sColdStartMillis;
+    }
+
+    /**
+     * Returns the last measured warm start time in milliseconds or -1.
+     */
+    public static long getWarmStartMillis() {
+        return sWarmStartMillis;
+    }
+}
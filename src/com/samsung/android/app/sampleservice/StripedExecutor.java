@@ -0,0 +1,287 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import android.os.SystemClock;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks on a bounded worker pool. Tasks with the same key are assigned to the same stripe
+ * and run in submission order, while tasks of different stripes run in parallel.
+ * Each stripe has a bounded queue; when it is full the configured {@link OverflowPolicy} applies.
+ */
+public final class StripedExecutor {
+
+    private static final String LOG_TAG = "StripedExecutor";
+
+    public enum OverflowPolicy {
+        // Discard the oldest queued task of the stripe
+        DROP_OLDEST,
+        // Merge into the newest queued task with the same key which accepts it. If none does, the
+        // task is not queued and execute returns false, so the caller keeps it and tries again later
+        MERGE
+    }
+
+    /**
+     * Unit of work of a stripe.
+     */
+    public static abstract class Task implements Runnable {
+        final String mKey;
+        long mEnqueueTime;
+
+        protected Task(String key) {
+            mKey = key;
+        }
+
+        public final String getKey() {
+            return mKey;
+        }
+
+        /**
+         * Folds a newer task with the same key into this queued one, which may be followed by
+         * other queued tasks with that key. Returns false if the tasks cannot be merged.
+         */
+        protected boolean merge(Task newer) {
+            return false;
+        }
+    }
+
+    public interface IdleListener {
+        void onIdle();
+    }
+
+    private final ExecutorService mWorkers;
+    private final Stripe[] mStripes;
+    private final int mQueueLimit;
+    private final OverflowPolicy mPolicy;
+
+    private final AtomicInteger mPendingCount = new AtomicInteger();
+    private volatile IdleListener mIdleListener;
+
+    public StripedExecutor(int threadCount, int stripeCount, int queueLimit, OverflowPolicy policy) {
+        if (threadCount <= 0 || stripeCount <= 0 || queueLimit <= 0 || policy == null) {
+            throw new IllegalArgumentException("invalid StripedExecutor configuration");
+        }
+
+        mQueueLimit = queueLimit;
+        mPolicy = policy;
+        mStripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            mStripes[i] = new Stripe();
+        }
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        mWorkers = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, LOG_TAG + "-" + threadNumber.incrementAndGet());
+            }
+        });
+    }
+
+    /**
+     * Sets a listener called on a worker thread whenever the last queued task has finished.
+     */
+    public void setIdleListener(IdleListener listener) {
+        mIdleListener = listener;
+    }
+
+    /**
+     * Queues task, or merges it into a queued one. Returns false if the task was rejected as its
+     * stripe is full, which only the MERGE policy does.
+     */
+    public boolean execute(Task task) {
+        return stripeFor(task.mKey).enqueue(task);
+    }
+
+    public int getStripeCount() {
+        return mStripes.length;
+    }
+
+    public int getStripeIndex(String key) {
+        int h = key != null ? key.hashCode() : 0;
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % mStripes.length;
+    }
+
+    public int getQueueDepth(int stripe) {
+        return mStripes[stripe].depth();
+    }
+
+    public int getMaxQueueDepth(int stripe) {
+        return mStripes[stripe].mMaxDepth;
+    }
+
+    public long getLastWaitMillis(int stripe) {
+        return mStripes[stripe].mLastWaitMillis;
+    }
+
+    public long getMaxWaitMillis(int stripe) {
+        return mStripes[stripe].mMaxWaitMillis;
+    }
+
+    public long getAverageWaitMillis(int stripe) {
+        Stripe s = mStripes[stripe];
+        long executed = s.mExecutedCount;
+        return executed > 0 ? s.mTotalWaitMillis / executed : 0;
+    }
+
+    public long getExecutedCount(int stripe) {
+        return mStripes[stripe].mExecutedCount;
+    }
+
+    public long getDroppedCount(int stripe) {
+        return mStripes[stripe].mDroppedCount;
+    }
+
+    public long getMergedCount(int stripe) {
+        return mStripes[stripe].mMergedCount;
+    }
+
+    public long getRejectedCount(int stripe) {
+        return mStripes[stripe].mRejectedCount;
+    }
+
+    public int getPendingCount() {
+        return mPendingCount.get();
+    }
+
+    private Stripe stripeFor(String key) {
+        return mStripes[getStripeIndex(key)];
+    }
+
+    private void onTaskDone() {
+        if (mPendingCount.decrementAndGet() == 0) {
+            IdleListener listener = mIdleListener;
+            if (listener != null) {
+                listener.onIdle();
+            }
+        }
+    }
+
+    // Serial queue drained by at most one worker at a time
+    private final class Stripe implements Runnable {
+        private final ArrayDeque<Task> mQueue = new ArrayDeque<Task>();
+        private boolean mScheduled;
+
+        // Statistics, written under the stripe lock or by its single draining worker
+        volatile int mMaxDepth;
+        volatile long mLastWaitMillis;
+        volatile long mMaxWaitMillis;
+        volatile long mTotalWaitMillis;
+        volatile long mExecutedCount;
+        volatile long mDroppedCount;
+        volatile long mMergedCount;
+        volatile long mRejectedCount;
+
+        synchronized int depth() {
+            return mQueue.size();
+        }
+
+        boolean enqueue(Task task) {
+            boolean schedule = false;
+            synchronized (this) {
+                // Count the new task first so the pending count cannot reach zero while it is added
+                mPendingCount.incrementAndGet();
+
+                if (mQueue.size() >= mQueueLimit) {
+                    if (mPolicy == OverflowPolicy.MERGE) {
+                        mPendingCount.decrementAndGet();
+                        if (mergeIntoQueued(task)) {
+                            mMergedCount++;
+                            return true;
+                        }
+                        mRejectedCount++;
+                        return false;
+                    }
+                    Task dropped = mQueue.pollFirst();
+                    mDroppedCount++;
+                    mPendingCount.decrementAndGet();
+                    if (TrackerTrace.WARN) {
+                        TrackerTrace.w(TrackerTrace.Event.TASK_DROPPED, task.mKey, dropped.mKey, null);
+                    }
+                }
+
+                task.mEnqueueTime = SystemClock.elapsedRealtime();
+                mQueue.addLast(task);
+                if (mQueue.size() > mMaxDepth) {
+                    mMaxDepth = mQueue.size();
+                }
+                if (!mScheduled) {
+                    mScheduled = true;
+                    schedule = true;
+                }
+            }
+
+            if (schedule) {
+                mWorkers.execute(this);
+            }
+            return true;
+        }
+
+        private boolean mergeIntoQueued(Task task) {
+            Iterator<Task> it = mQueue.descendingIterator();
+            while (it.hasNext()) {
+                Task queued = it.next();
+                if (queued.mKey.equals(task.mKey) && queued.merge(task)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Task task;
+                synchronized (this) {
+                    task = mQueue.pollFirst();
+                    if (task == null) {
+                        mScheduled = false;
+                        return;
+                    }
+                }
+
+                long waitMillis = SystemClock.elapsedRealtime() - task.mEnqueueTime;
+                mLastWaitMillis = waitMillis;
+                if (waitMillis > mMaxWaitMillis) {
+                    mMaxWaitMillis = waitMillis;
+                }
+                mTotalWaitMillis += waitMillis;
+
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    if (TrackerTrace.WARN) {
+                        TrackerTrace.w(TrackerTrace.Event.TASK_FAILED, task.mKey, null, e);
+                    }
+                } finally {
+                    mExecutedCount++;
+                    onTaskDone();
+                }
+            }
+        }
+    }
+}
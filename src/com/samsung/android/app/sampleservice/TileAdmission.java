@@ -0,0 +1,308 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limits the button intents of each (trackerId, tileId) with a token bucket.
+ * Only requests whose validation value was verified may be offered. A request arriving without a
+ * token is folded into the pending requests of the tile, increments are summed and a log in is
+ * kept once, and these are submitted once the next token is available, so requests are delayed
+ * but never lost. A request the sink cannot take yet is kept the same way. Once maxBuckets tiles
+ * are tracked and none of them is idle, requests of further tiles are submitted right away
+ * without a limit, and tracked only if the sink does not take them.
+ */
+final class TileAdmission {
+
+    private static final String LOG_TAG = "TileAdmission";
+
+    interface Sink {
+        /**
+         * Called with each admitted request, increments being the sum of the folded ones.
+         * Returns false if the request cannot be taken now, it is then kept and submitted again.
+         */
+        boolean submit(String trackerId, String tileId, String validationValue, boolean isLogInRequest, int increments);
+    }
+
+    static final int ADMITTED = 0;
+    static final int FOLDED = 1;
+
+    private final int mBurst;
+    private final long mRefillIntervalMs;
+    private final int mMaxBuckets;
+    private final Sink mSink;
+
+    // Guarded by this
+    private final HashMap<String, Bucket> mBuckets = new HashMap<String, Bucket>();
+    private int mPendingCount;
+
+    private final ScheduledExecutorService mScheduler;
+
+    /**
+     * @param burst number of requests a tile may send at once
+     * @param refillIntervalMs time after which a tile gets one more token
+     * @param maxBuckets number of tiles rate limited at once; requests for more are not limited
+     */
+    TileAdmission(int burst, long refillIntervalMs, int maxBuckets, Sink sink) {
+        mBurst = burst;
+        mRefillIntervalMs = refillIntervalMs;
+        mMaxBuckets = maxBuckets;
+        mSink = sink;
+        mScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, LOG_TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Admits or folds the verified request. Admitted requests are passed to the sink on the
+     * calling thread.
+     */
+    int offer(String trackerId, String tileId, String validationValue, boolean isLogInRequest, int increments) {
+        String key = trackerId + '/' + tileId;
+        int folded = 0;
+        synchronized (this) {
+            long now = SystemClock.elapsedRealtime();
+            Bucket bucket = mBuckets.get(key);
+            if (bucket == null) {
+                if (mBuckets.size() >= mMaxBuckets && !evictIdle(now)) {
+                    bucket = null;
+                } else {
+                    bucket = new Bucket(trackerId, tileId, mBurst, now);
+                    mBuckets.put(key, bucket);
+                }
+            }
+
+            if (bucket != null) {
+                refill(bucket, now);
+                // A pending log in is not overtaken by a later increment
+                if (bucket.tokens < 1 || (bucket.pendingLogIn && !isLogInRequest)) {
+                    fold(bucket, validationValue, isLogInRequest, increments);
+                    TrackerMetrics.increment(TrackerMetrics.Counter.ADMISSION_FOLDED);
+                    return FOLDED;
+                }
+
+                bucket.tokens--;
+                if (isLogInRequest) {
+                    // A folded log in is served by this one
+                    if (bucket.pendingLogIn) {
+                        bucket.pendingLogIn = false;
+                        if (!bucket.hasPending()) {
+                            bucket.pendingValidationValue = null;
+                            mPendingCount--;
+                        }
+                    }
+                } else if (bucket.pendingIncrements > 0) {
+                    // Pending increments ride along, no log in is pending here
+                    folded = bucket.pendingIncrements;
+                    bucket.pendingIncrements = 0;
+                    bucket.pendingValidationValue = null;
+                    mPendingCount--;
+                }
+            } else {
+                TrackerMetrics.increment(TrackerMetrics.Counter.ADMISSION_UNLIMITED);
+            }
+        }
+
+        if (!mSink.submit(trackerId, tileId, validationValue, isLogInRequest, increments + folded)) {
+            requeue(trackerId, tileId, validationValue, isLogInRequest, increments + folded);
+            return FOLDED;
+        }
+        return ADMITTED;
+    }
+
+    /**
+     * Returns the number of tiles with folded requests not submitted yet.
+     */
+    synchronized int getPendingCount() {
+        return mPendingCount;
+    }
+
+    /**
+     * Stops the scheduler and passes all pending requests to sink on the calling thread.
+     */
+    void close(Sink sink) {
+        mScheduler.shutdownNow();
+        for (Bucket bucket : drainAll()) {
+            submitPending(bucket, sink);
+        }
+    }
+
+    private synchronized Bucket[] drainAll() {
+        Bucket[] drained = new Bucket[mPendingCount];
+        int count = 0;
+        for (Bucket bucket : mBuckets.values()) {
+            if (bucket.hasPending()) {
+                drained[count++] = bucket.takePending();
+            }
+        }
+        mPendingCount = 0;
+        return drained;
+    }
+
+    // Keeps a request the sink did not take until the next token of the tile
+    private synchronized void requeue(String trackerId, String tileId, String validationValue,
+            boolean isLogInRequest, int increments) {
+        String key = trackerId + '/' + tileId;
+        Bucket bucket = mBuckets.get(key);
+        if (bucket == null) {
+            // Tracked beyond maxBuckets until it is idle again
+            bucket = new Bucket(trackerId, tileId, 0, SystemClock.elapsedRealtime());
+            mBuckets.put(key, bucket);
+        }
+        fold(bucket, validationValue, isLogInRequest, increments);
+    }
+
+    private void fold(Bucket bucket, String validationValue, boolean isLogInRequest, int increments) {
+        if (!bucket.hasPending()) {
+            mPendingCount++;
+        }
+        if (isLogInRequest) {
+            bucket.pendingLogIn = true;
+        } else {
+            bucket.pendingIncrements += increments;
+        }
+        // Every offered value is verified, the latest one is submitted
+        bucket.pendingValidationValue = validationValue;
+        scheduleDrain(bucket);
+    }
+
+    private void scheduleDrain(final Bucket bucket) {
+        if (!bucket.drainScheduled) {
+            bucket.drainScheduled = true;
+            long delay = (long) Math.ceil((1 - bucket.tokens) * mRefillIntervalMs);
+            mScheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    drain(bucket);
+                }
+            }, Math.max(delay, 1), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void drain(Bucket bucket) {
+        Bucket pending;
+        synchronized (this) {
+            bucket.drainScheduled = false;
+            if (!bucket.hasPending()) {
+                return;
+            }
+            refill(bucket, SystemClock.elapsedRealtime());
+            if (bucket.tokens < 1) {
+                // Woken early, wait for the token
+                scheduleDrain(bucket);
+                return;
+            }
+            bucket.tokens--;
+            pending = bucket.takePending();
+        }
+
+        submitPending(pending, mSink);
+        // Counted down after the submit so the tile is never seen as idle in between
+        synchronized (this) {
+            mPendingCount--;
+        }
+    }
+
+    // The log in goes first, as it was folded before any increment still pending
+    private void submitPending(Bucket pending, Sink sink) {
+        if (pending.pendingLogIn
+                && !sink.submit(pending.trackerId, pending.tileId, pending.pendingValidationValue, true, 0)) {
+            requeue(pending.trackerId, pending.tileId, pending.pendingValidationValue, true, 0);
+            if (pending.pendingIncrements > 0) {
+                requeue(pending.trackerId, pending.tileId, pending.pendingValidationValue, false,
+                        pending.pendingIncrements);
+            }
+            return;
+        }
+        if (pending.pendingIncrements > 0 && !sink.submit(pending.trackerId, pending.tileId,
+                pending.pendingValidationValue, false, pending.pendingIncrements)) {
+            requeue(pending.trackerId, pending.tileId, pending.pendingValidationValue, false,
+                    pending.pendingIncrements);
+        }
+    }
+
+    private void refill(Bucket bucket, long now) {
+        if (now > bucket.lastRefill) {
+            bucket.tokens = Math.min(mBurst, bucket.tokens + (double) (now - bucket.lastRefill) / mRefillIntervalMs);
+            bucket.lastRefill = now;
+        }
+    }
+
+    // Drops the buckets of tiles which are idle long enough to have a full bucket again
+    private boolean evictIdle(long now) {
+        boolean evicted = false;
+        Iterator<Bucket> iterator = mBuckets.values().iterator();
+        while (iterator.hasNext()) {
+            Bucket bucket = iterator.next();
+            refill(bucket, now);
+            if (bucket.tokens >= mBurst && !bucket.hasPending() && !bucket.drainScheduled) {
+                iterator.remove();
+                evicted = true;
+            }
+        }
+        return evicted;
+    }
+
+    private static final class Bucket {
+        final String trackerId;
+        final String tileId;
+        double tokens;
+        long lastRefill;
+        boolean pendingLogIn;
+        int pendingIncrements;
+        String pendingValidationValue;
+        boolean drainScheduled;
+
+        Bucket(String trackerId, String tileId, double tokens, long now) {
+            this.trackerId = trackerId;
+            this.tileId = tileId;
+            this.tokens = tokens;
+            this.lastRefill = now;
+        }
+
+        boolean hasPending() {
+            return pendingLogIn || pendingIncrements > 0;
+        }
+
+        // Moves the pending requests into a copy
+        Bucket takePending() {
+            Bucket copy = new Bucket(trackerId, tileId, 0, 0);
+            copy.pendingLogIn = pendingLogIn;
+            copy.pendingIncrements = pendingIncrements;
+            copy.pendingValidationValue = pendingValidationValue;
+            pendingLogIn = false;
+            pendingIncrements = 0;
+            pendingValidationValue = null;
+            return copy;
+        }
+    }
+}
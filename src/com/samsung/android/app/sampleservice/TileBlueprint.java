@@ -0,0 +1,181 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import com.samsung.android.sdk.shealth.tracker.TrackerTile;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.res.Resources.NotFoundException;
+
+import java.util.Date;
+
+/**
+ * Precompiled template of a TrackerTile.
+ * Intents, colors, icon and title are resolved once per process so building a tile only fills in
+ * the fields that change between posts.
+ */
+final class TileBlueprint {
+
+    private static final String SHARED_PREFERENCE_LOGIN_KEY = "log_in";
+    private static final String VALIDATION_KEY = "validation_key";
+
+    private static final String CONTENT_UNIT = "LBS";
+
+    // String forms of small content values, filled on demand
+    private static final String[] sValueStrings = new String[1024];
+
+    private static TileBlueprint sDefaultTile;
+    private static TileBlueprint sUpdateTile;
+
+    private final int mTemplate;
+    private final int mTitleResId;
+    private final int mIconResId;
+    private final int mContentColor;
+    private final String mContentUnit;
+    // mContentUnit followed by small totals of today, filled on demand
+    private final String[] mTotalUnits;
+    private final String mButtonText;
+    private final Intent mLaunchIntent;
+    private final Intent mServiceIntent;
+
+    /**
+     * Returns the blueprint of the tile posted before the user logs in.
+     */
+    static synchronized TileBlueprint getDefaultTile(Context context) throws NotFoundException {
+        if (sDefaultTile == null) {
+            Context appContext = context.getApplicationContext();
+
+            // Create Intent to do an action
+            // when the button on this tile is clicked
+            Intent serviceIntent = new Intent(appContext, MyTrackerService.class);
+            serviceIntent.putExtra(SHARED_PREFERENCE_LOGIN_KEY, true);
+            serviceIntent.putExtra(VALIDATION_KEY, ValidationKeyVerifier.getInstance(appContext).getKey());
+
+            sDefaultTile = new TileBlueprint(appContext, TrackerTile.TRACKER_TILE_TYPE_1, R.drawable.tracker_icon,
+                    null, "START", serviceIntent);
+        }
+        return sDefaultTile;
+    }
+
+    /**
+     * Returns the blueprint of the tile showing the content value.
+     */
+    static synchronized TileBlueprint getUpdateTile(Context context) throws NotFoundException {
+        if (sUpdateTile == null) {
+            Context appContext = context.getApplicationContext();
+
+            // Create Intent to do an action
+            // when the button on this tile is clicked
+            Intent serviceIntent = new Intent(appContext, MyTrackerService.class);
+            serviceIntent.putExtra(VALIDATION_KEY, ValidationKeyVerifier.getInstance(appContext).getKey());
+
+            sUpdateTile = new TileBlueprint(appContext, TrackerTile.TRACKER_TILE_TYPE_3,
+                    R.drawable.tracker_icon_30x30, CONTENT_UNIT, "UPDATE", serviceIntent);
+        }
+        return sUpdateTile;
+    }
+
+    /**
+     * Drops the built blueprints so the next ones carry the current validation key.
+     */
+    static synchronized void reset() {
+        sDefaultTile = null;
+        sUpdateTile = null;
+    }
+
+    private TileBlueprint(Context context, int template, int iconResId, String contentUnit, String buttonText,
+            Intent serviceIntent) throws NotFoundException {
+        mTemplate = template;
+        mTitleResId = R.string.tracker_display_name;
+        mIconResId = iconResId;
+        mContentColor = context.getResources().getColor(R.color.tracker_content_color);
+        mContentUnit = contentUnit;
+        mTotalUnits = contentUnit != null ? new String[sValueStrings.length] : null;
+        mButtonText = buttonText;
+
+        // Create Intent to do an action
+        // when the tracker tile is clicked
+        mLaunchIntent = new Intent(context, MainActivity.class);
+        mServiceIntent = serviceIntent;
+    }
+
+    int getTemplate() {
+        return mTemplate;
+    }
+
+    /**
+     * Creates a tile of this template. contentValue, todayTotal and date are only used by
+     * templates which show a content value; todayTotal, the sum of today's increments, is shown
+     * next to the unit when it is not 0.
+     */
+    TrackerTile build(Context context, String trackerId, String tileId, int contentValue, long todayTotal,
+            Date date) throws IllegalArgumentException, NotFoundException {
+        TrackerTile tile = new TrackerTile(context, trackerId, tileId, mTemplate);
+
+        // Set Title
+        tile.setTitle(mTitleResId)
+                // Set Icon resource
+                .setIcon(mIconResId)
+                // Set content color
+                .setContentColor(mContentColor)
+                // Set content intent
+                .setContentIntent(TrackerTile.INTENT_TYPE_ACTIVITY, mLaunchIntent)
+                // Set button intent
+                .setButtonIntent(mButtonText, TrackerTile.INTENT_TYPE_SERVICE, mServiceIntent);
+
+        if (mContentUnit != null) {
+            // Set content value, unit and date text
+            tile.setContentValue(valueString(contentValue))
+                    .setContentUnit(unitString(todayTotal))
+                    .setDate(date);
+        }
+        return tile;
+    }
+
+    private String unitString(long todayTotal) {
+        if (todayTotal == 0) {
+            return mContentUnit;
+        }
+        if (todayTotal < 0 || todayTotal >= mTotalUnits.length) {
+            return mContentUnit + " (+" + todayTotal + " today)";
+        }
+
+        // Racing threads store equal strings
+        String s = mTotalUnits[(int) todayTotal];
+        if (s == null) {
+            s = mContentUnit + " (+" + todayTotal + " today)";
+            mTotalUnits[(int) todayTotal] = s;
+        }
+        return s;
+    }
+
+    private static String valueString(int value) {
+        if (value < 0 || value >= sValueStrings.length) {
+            return String.valueOf(value);
+        }
+
+        String s = sValueStrings[value];
+        if (s == null) {
+            s = String.valueOf(value);
+            sValueStrings[value] = s;
+        }
+        return s;
+    }
+}
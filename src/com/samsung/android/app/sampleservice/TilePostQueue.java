@@ -0,0 +1,317 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import com.samsung.android.sdk.shealth.tracker.TrackerTile;
+import com.samsung.android.sdk.shealth.tracker.TrackerTileManager;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outbound queue of tile posts which could not be delivered to SHealth.
+ * Only the (trackerId, tileId) of a failed or deferred post is kept on disk, as the tile is built
+ * again from the current state when it is replayed, so the queue holds the latest state per tile.
+ * All queued tiles are replayed in one batch once a TrackerTileManager is available. After a failed
+ * post no further posts are attempted until the backoff, doubled with each failure and jittered,
+ * has elapsed.
+ */
+public final class TilePostQueue implements TilePostScheduler.OnPostResultListener {
+
+    private static final String LOG_TAG = "TilePostQueue";
+
+    private static final String SHARED_PREFERENCE_NAME = "pending_tile_posts";
+    private static final String TILES_KEY_PREFIX = "tiles:";
+    private static final String ATTEMPT_KEY = "attempt";
+    private static final String RETRY_AT_KEY = "retry_at";
+
+    public static final long INITIAL_BACKOFF_MS = 10 * 1000;
+    public static final long MAX_BACKOFF_MS = 30 * 60 * 1000;
+
+    private static TilePostQueue sInstance;
+
+    private final Context mContext;
+    private final SharedPreferences mPreferences;
+    private final ScheduledExecutorService mExecutor;
+    private final Random mRandom = new Random();
+
+    // Guarded by this
+    private final HashMap<String, Set<String>> mPending = new HashMap<String, Set<String>>();
+    private int mAttempt;
+    private long mRetryAt;
+    private TrackerTileManager mManager;
+    private ScheduledFuture<?> mReplay;
+
+    public static synchronized TilePostQueue getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new TilePostQueue(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private TilePostQueue(Context context) {
+        mContext = context;
+        mPreferences = context.getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE);
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, LOG_TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        for (Map.Entry<String, ?> entry : mPreferences.getAll().entrySet()) {
+            if (entry.getKey().startsWith(TILES_KEY_PREFIX) && entry.getValue() instanceof Set) {
+                Set<String> tileIds = new HashSet<String>();
+                for (Object tileId : (Set<?>) entry.getValue()) {
+                    tileIds.add((String) tileId);
+                }
+                mPending.put(entry.getKey().substring(TILES_KEY_PREFIX.length()), tileIds);
+            }
+        }
+        mAttempt = mPreferences.getInt(ATTEMPT_KEY, 0);
+        mRetryAt = mPreferences.getLong(RETRY_AT_KEY, 0);
+
+        TilePostScheduler.getInstance().setOnPostResultListener(this);
+    }
+
+    /**
+     * Queues a post of the tile, to be sent with the state at the time of the replay.
+     */
+    public synchronized void defer(String trackerId, String tileId) {
+        if (add(trackerId, tileId)) {
+            TrackerMetrics.increment(TrackerMetrics.Counter.POST_DEFERRED);
+        }
+    }
+
+    public synchronized void remove(String trackerId, String tileId) {
+        Set<String> tileIds = mPending.get(trackerId);
+        if (tileIds != null && tileIds.remove(tileId)) {
+            save(trackerId);
+        }
+    }
+
+    public synchronized void clear(String trackerId) {
+        if (mPending.remove(trackerId) != null) {
+            mPreferences.edit().remove(TILES_KEY_PREFIX + trackerId).apply();
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        int count = 0;
+        for (Set<String> tileIds : mPending.values()) {
+            count += tileIds.size();
+        }
+        return count;
+    }
+
+    /**
+     * Returns true while posts should be deferred because an earlier one failed.
+     */
+    public synchronized boolean isBackingOff() {
+        long now = System.currentTimeMillis();
+        // A retry time too far ahead means the clock was set back
+        return mRetryAt > now && mRetryAt - now <= MAX_BACKOFF_MS;
+    }
+
+    /**
+     * Sets the TrackerTileManager the queued tiles are replayed to, and replays them once the
+     * backoff allows.
+     */
+    public synchronized void attach(TrackerTileManager manager) {
+        mManager = manager;
+        if (manager != null && !mPending.isEmpty()) {
+            scheduleReplay(isBackingOff() ? mRetryAt - System.currentTimeMillis() : 0);
+        }
+    }
+
+    @Override
+    public synchronized void onPosted(String trackerId, String tileId) {
+        remove(trackerId, tileId);
+        if (mAttempt > 0) {
+            // SHealth is reachable again
+            resetBackoff();
+            if (mManager != null && !mPending.isEmpty()) {
+                scheduleReplay(0);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onPostFailed(String trackerId, String tileId) {
+        defer(trackerId, tileId);
+        // Posts failing within the same backoff period count as one failure
+        if (!isBackingOff()) {
+            backOff();
+        }
+    }
+
+    private void replay() {
+        TrackerTileManager manager;
+        ArrayList<String[]> tiles = new ArrayList<String[]>();
+        synchronized (this) {
+            manager = mManager;
+            if (manager == null) {
+                return;
+            }
+            for (Map.Entry<String, Set<String>> entry : mPending.entrySet()) {
+                for (String tileId : entry.getValue()) {
+                    tiles.add(new String[] { entry.getKey(), tileId });
+                }
+            }
+        }
+        if (TrackerTrace.DEBUG) {
+            TrackerTrace.d(TrackerTrace.Event.REPLAY, null, null, tiles.size());
+        }
+
+        for (String[] tile : tiles) {
+            String trackerId = tile[0];
+            String tileId = tile[1];
+            // Taken out before the tile is built so a deferral in between is not lost
+            if (!take(trackerId, tileId)) {
+                continue;
+            }
+
+            // Taken already, so any failure from here on queues the tile again instead of dropping it
+            TrackerTile trackerTile = null;
+            try {
+                trackerTile = MyTracker.buildTile(mContext, trackerId, tileId);
+            } catch (RuntimeException e) {
+                if (TrackerTrace.WARN) {
+                    TrackerTrace.w(TrackerTrace.Event.REPLAY_FAILED, trackerId, tileId, e);
+                }
+                TrackerMetrics.increment(TrackerMetrics.Counter.TILE_BUILD_FAILED);
+            }
+
+            boolean posted = false;
+            if (trackerTile != null) {
+                long startTime = TrackerMetrics.start();
+                try {
+                    posted = manager.post(trackerTile);
+                } catch (RuntimeException e) {
+                    // Also an IllegalStateException once SHealth is gone
+                    if (TrackerTrace.WARN) {
+                        TrackerTrace.w(TrackerTrace.Event.REPLAY_FAILED, trackerId, tileId, e);
+                    }
+                } finally {
+                    TrackerMetrics.record(TrackerMetrics.Timer.TILE_POST, startTime);
+                }
+                if (!posted) {
+                    TrackerMetrics.increment(TrackerMetrics.Counter.POST_FAILED);
+                }
+            }
+
+            if (!posted) {
+                synchronized (this) {
+                    add(trackerId, tileId);
+                    backOff();
+                }
+                return;
+            }
+            TrackerMetrics.increment(TrackerMetrics.Counter.POST_REPLAYED);
+            // The scheduler does not know what was posted
+            TilePostScheduler.getInstance().invalidate(trackerId, tileId);
+        }
+
+        synchronized (this) {
+            resetBackoff();
+        }
+    }
+
+    private synchronized boolean take(String trackerId, String tileId) {
+        Set<String> tileIds = mPending.get(trackerId);
+        if (tileIds == null || !tileIds.remove(tileId)) {
+            return false;
+        }
+        save(trackerId);
+        return true;
+    }
+
+    private boolean add(String trackerId, String tileId) {
+        Set<String> tileIds = mPending.get(trackerId);
+        if (tileIds == null) {
+            tileIds = new HashSet<String>();
+            mPending.put(trackerId, tileIds);
+        }
+        if (!tileIds.add(tileId)) {
+            return false;
+        }
+        save(trackerId);
+        return true;
+    }
+
+    private void backOff() {
+        mAttempt++;
+        long delay = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(mAttempt - 1, 20));
+        // Jitter in [delay / 2, delay] so the retries of many tiles and devices spread out
+        long jittered = delay / 2 + (long) (mRandom.nextDouble() * (delay / 2));
+        mRetryAt = System.currentTimeMillis() + jittered;
+        mPreferences.edit().putInt(ATTEMPT_KEY, mAttempt).putLong(RETRY_AT_KEY, mRetryAt).apply();
+        if (TrackerTrace.DEBUG) {
+            TrackerTrace.d(TrackerTrace.Event.BACK_OFF, null, null, jittered);
+        }
+
+        if (mManager != null) {
+            scheduleReplay(jittered);
+        }
+    }
+
+    private void resetBackoff() {
+        if (mAttempt != 0 || mRetryAt != 0) {
+            mAttempt = 0;
+            mRetryAt = 0;
+            mPreferences.edit().remove(ATTEMPT_KEY).remove(RETRY_AT_KEY).apply();
+        }
+    }
+
+    private void scheduleReplay(long delayMs) {
+        if (mReplay != null) {
+            mReplay.cancel(false);
+        }
+        mReplay = mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                replay();
+            }
+        }, Math.max(delayMs, 0), TimeUnit.MILLISECONDS);
+    }
+
+    private void save(String trackerId) {
+        Set<String> tileIds = mPending.get(trackerId);
+        if (tileIds == null || tileIds.isEmpty()) {
+            mPending.remove(trackerId);
+            mPreferences.edit().remove(TILES_KEY_PREFIX + trackerId).apply();
+        } else {
+            mPreferences.edit().putStringSet(TILES_KEY_PREFIX + trackerId, new HashSet<String>(tileIds)).apply();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import com.samsung.android.sdk.shealth.tracker.TrackerTile;
+import com.samsung.android.sdk.shealth.tracker.TrackerTileManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces TrackerTile posts between MyTracker and TrackerTileManager.
+ * Posts for the same (trackerId, tileId) requested within the window are merged so only
+ * the newest tile is posted, and a tile whose content signature matches the last posted one
+ * is not posted again.
+ */
+public final class TilePostScheduler {
+
+    private static final String LOG_TAG = "TilePostScheduler";
+
+    public static final long DEFAULT_WINDOW_MS = 300;
+
+    public interface OnPostResultListener {
+        /**
+         * Called on the scheduler thread after the tile was posted.
+         */
+        void onPosted(String trackerId, String tileId);
+
+        /**
+         * Called on the scheduler thread after TrackerTileManager failed to post the tile.
+         */
+        void onPostFailed(String trackerId, String tileId);
+    }
+
+    private static TilePostScheduler sInstance;
+
+    private final ScheduledExecutorService mExecutor;
+
+    // Newest not-yet-posted tile per key
+    private final ConcurrentHashMap<String, PendingPost> mPending = new ConcurrentHashMap<String, PendingPost>();
+
+    // Content signature of the last tile actually posted per key
+    private final ConcurrentHashMap<String, String> mLastPosted = new ConcurrentHashMap<String, String>();
+
+    private volatile long mWindowMs;
+
+    private volatile OnPostResultListener mListener;
+
+    private final AtomicLong mRequestedCount = new AtomicLong();
+    private final AtomicLong mMergedCount = new AtomicLong();
+    private final AtomicLong mSentCount = new AtomicLong();
+    private final AtomicLong mSkippedCount = new AtomicLong();
+
+    public static synchronized TilePostScheduler getInstance() {
+        if (sInstance == null) {
+            sInstance = new TilePostScheduler(DEFAULT_WINDOW_MS);
+        }
+        return sInstance;
+    }
+
+    TilePostScheduler(long windowMs) {
+        mWindowMs = windowMs;
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, LOG_TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Sets the window in milliseconds during which posts for the same tile are merged.
+     */
+    public void setWindow(long windowMs) {
+        if (windowMs < 0) {
+            throw new IllegalArgumentException("windowMs < 0");
+        }
+        mWindowMs = windowMs;
+    }
+
+    public long getWindow() {
+        return mWindowMs;
+    }
+
+    public void setOnPostResultListener(OnPostResultListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Requests a post of the tile. The tile is posted after the window unless a newer one
+     * for the same tile replaces it, and is skipped if signature equals the last posted one.
+     */
+    public void schedule(TrackerTileManager manager, String trackerId, String tileId, String signature,
+            TrackerTile tile) {
+        if (manager == null || tile == null) {
+            if (manager == null) {
+                TrackerMetrics.increment(TrackerMetrics.Counter.POST_NO_MANAGER);
+            }
+            return;
+        }
+
+        mRequestedCount.incrementAndGet();
+
+        final String key = key(trackerId, tileId);
+        PendingPost previous = mPending.put(key, new PendingPost(manager, trackerId, tileId, signature, tile));
+        if (previous != null) {
+            // A flush for this key is already scheduled and will pick up the newest tile
+            mMergedCount.incrementAndGet();
+            return;
+        }
+
+        mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush(key);
+            }
+        }, mWindowMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Forgets the last posted content of the tile so the next post is sent even if unchanged.
+     * Should be called when SHealth requests or removes the tile.
+     */
+    public void invalidate(String trackerId, String tileId) {
+        mLastPosted.remove(key(trackerId, tileId));
+    }
+
+    /**
+     * Blocks until the posts requested so far are flushed, or timeoutMs has elapsed.
+     * Returns false on timeout.
+     */
+    public boolean awaitFlushed(long timeoutMs) {
+        // Tasks run in the order they are due, so this one runs after every flush scheduled before it
+        ScheduledFuture<?> barrier = mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, mWindowMs, TimeUnit.MILLISECONDS);
+        try {
+            barrier.get(timeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // The barrier does nothing
+        } catch (TimeoutException e) {
+            barrier.cancel(false);
+        }
+        return false;
+    }
+
+    private void flush(String key) {
+        PendingPost post = mPending.remove(key);
+        if (post == null) {
+            return;
+        }
+
+        if (post.signature != null && post.signature.equals(mLastPosted.get(key))) {
+            mSkippedCount.incrementAndGet();
+            return;
+        }
+
+        boolean posted = false;
+        long startTime = TrackerMetrics.start();
+        try {
+            posted = post.manager.post(post.tile);
+        } catch (RuntimeException e) {
+            // Any failure on this executor goes through the failure path so TilePostQueue retries
+            if (TrackerTrace.WARN) {
+                TrackerTrace.w(TrackerTrace.Event.POST_FAILED, post.trackerId, post.tileId, e);
+            }
+        } finally {
+            TrackerMetrics.record(TrackerMetrics.Timer.TILE_POST, startTime);
+        }
+
+        OnPostResultListener listener = mListener;
+        if (posted) {
+            mSentCount.incrementAndGet();
+            if (post.signature != null) {
+                mLastPosted.put(key, post.signature);
+            } else {
+                mLastPosted.remove(key);
+            }
+            if (listener != null) {
+                listener.onPosted(post.trackerId, post.tileId);
+            }
+        } else {
+            TrackerMetrics.increment(TrackerMetrics.Counter.POST_FAILED);
+            if (listener != null) {
+                listener.onPostFailed(post.trackerId, post.tileId);
+            }
+        }
+    }
+
+    public long getRequestedCount() {
+        return mRequestedCount.get();
+    }
+
+    public long getMergedCount() {
+        return mMergedCount.get();
+    }
+
+    public long getSentCount() {
+        return mSentCount.get();
+    }
+
+    public long getSkippedCount() {
+        return mSkippedCount.get();
+    }
+
+    private static String key(String trackerId, String tileId) {
+        return trackerId + '/' + tileId;
+    }
+
+    private static final class PendingPost {
+        final TrackerTileManager manager;
+        final String trackerId;
+        final String tileId;
+        final String signature;
+        final TrackerTile tile;
+
+        PendingPost(TrackerTileManager manager, String trackerId, String tileId, String signature, TrackerTile tile) {
+            this.manager = manager;
+            this.trackerId = trackerId;
+            this.tileId = tileId;
+            this.signature = signature;
+            this.tile = tile;
+        }
+    }
+}
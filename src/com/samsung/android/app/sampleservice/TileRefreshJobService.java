@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+
+/**
+ * Runs the periodic tile refresh as a JobScheduler job on API 21 and later.
+ * JobScheduler batches the job with other wakeups and defers it while the device dozes. From API 26
+ * it also waits while the battery is low, before that the job checks the battery itself.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public final class TileRefreshJobService extends JobService {
+
+    private static final int JOB_ID = 0x7e5f;
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O && TileRefreshReceiver.isBatteryLow(this)) {
+            return false;
+        }
+
+        TileRefreshScheduler.getInstance(this).refresh(new Runnable() {
+            @Override
+            public void run() {
+                jobFinished(params, false);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The next period refreshes again
+        return false;
+    }
+
+    /**
+     * Schedules the refresh through JobScheduler.
+     */
+    static final class JobBackend implements TileRefreshScheduler.Backend {
+
+        @Override
+        public void schedule(Context context, long intervalMs) {
+            JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+            // Scheduling again would restart the period
+            for (JobInfo job : scheduler.getAllPendingJobs()) {
+                if (job.getId() == JOB_ID && job.getIntervalMillis() == intervalMs) {
+                    return;
+                }
+            }
+
+            JobInfo.Builder builder = new JobInfo.Builder(JOB_ID,
+                    new ComponentName(context, TileRefreshJobService.class))
+                    .setPeriodic(intervalMs);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                builder.setRequiresBatteryNotLow(true);
+            }
+            scheduler.schedule(builder.build());
+        }
+
+        @Override
+        public void cancel(Context context) {
+            JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+            scheduler.cancel(JOB_ID);
+        }
+    }
+}
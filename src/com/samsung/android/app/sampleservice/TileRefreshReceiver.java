@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.SystemClock;
+
+/**
+ * Runs the periodic tile refresh from an inexact alarm before API 21.
+ * The alarm does not wake the device, so it is delivered with the next wakeup of something else,
+ * and is skipped while the battery is low.
+ */
+public final class TileRefreshReceiver extends BroadcastReceiver {
+
+    // Below this battery level in percent, refreshes are skipped unless charging
+    private static final int LOW_BATTERY_PERCENT = 15;
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (isBatteryLow(context)) {
+            return;
+        }
+
+        final PendingResult result = goAsync();
+        TileRefreshScheduler.getInstance(context).refresh(new Runnable() {
+            @Override
+            public void run() {
+                result.finish();
+            }
+        });
+    }
+
+    static boolean isBatteryLow(Context context) {
+        // Sticky broadcast, no receiver is registered
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) {
+            return false;
+        }
+
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        boolean plugged = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        return !plugged && level >= 0 && scale > 0 && level * 100 < LOW_BATTERY_PERCENT * scale;
+    }
+
+    /**
+     * Schedules the refresh through AlarmManager.
+     */
+    static final class AlarmBackend implements TileRefreshScheduler.Backend {
+
+        @Override
+        public void schedule(Context context, long intervalMs) {
+            // An existing alarm keeps its period
+            if (pendingIntent(context, PendingIntent.FLAG_NO_CREATE) != null) {
+                return;
+            }
+
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+                    SystemClock.elapsedRealtime() + intervalMs, intervalMs, pendingIntent(context, 0));
+        }
+
+        @Override
+        public void cancel(Context context) {
+            PendingIntent operation = pendingIntent(context, PendingIntent.FLAG_NO_CREATE);
+            if (operation != null) {
+                AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+                alarmManager.cancel(operation);
+                operation.cancel();
+            }
+        }
+
+        private static PendingIntent pendingIntent(Context context, int flags) {
+            return PendingIntent.getBroadcast(context, 0, new Intent(context, TileRefreshReceiver.class), flags);
+        }
+    }
+}
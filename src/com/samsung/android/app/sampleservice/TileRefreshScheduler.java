@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import android.content.Context;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Refreshes all posted tiles in one periodic pass, so content depending on the time does not go
+ * stale between SHealth callbacks and button intents.
+ * The app is woken at most once per {@link #REFRESH_INTERVAL_MS} by a {@link Backend}, which is
+ * JobScheduler on API 21 and later and an inexact alarm before. A pass rebuilds every posted tile
+ * which is logged in, and TilePostScheduler only posts those whose content signature changed.
+ * The wakeup is held until the posts are out.
+ */
+public final class TileRefreshScheduler {
+
+    private static final String LOG_TAG = "TileRefreshScheduler";
+
+    public static final long REFRESH_INTERVAL_MS = 15 * 60 * 1000;
+
+    // Longest a pass keeps the app awake waiting for its posts
+    private static final long FLUSH_TIMEOUT_MS = 5 * 1000;
+
+    /**
+     * Wakes the app periodically to run {@link #refresh}. Replaced by a fake in tests.
+     */
+    public interface Backend {
+        /**
+         * Schedules the periodic wakeup unless one with the same interval is already scheduled.
+         */
+        void schedule(Context context, long intervalMs);
+
+        void cancel(Context context);
+    }
+
+    private static TileRefreshScheduler sInstance;
+
+    private final Context mContext;
+    private final ExecutorService mExecutor;
+
+    // Guarded by this
+    private Backend mBackend;
+    private boolean mScheduled;
+
+    public static synchronized TileRefreshScheduler getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new TileRefreshScheduler(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private TileRefreshScheduler(Context context) {
+        mContext = context;
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, LOG_TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Sets the backend waking the app. Without one, passes only run when {@link #refresh} is called.
+     */
+    public synchronized void setBackend(Backend backend) {
+        if (mBackend != null && mScheduled) {
+            mBackend.cancel(mContext);
+        }
+        mBackend = backend;
+        mScheduled = false;
+    }
+
+    /**
+     * Schedules the periodic refresh. Cheap to call again while it is scheduled.
+     */
+    public synchronized void start() {
+        if (mBackend != null && !mScheduled) {
+            mBackend.schedule(mContext, REFRESH_INTERVAL_MS);
+            mScheduled = true;
+        }
+    }
+
+    /**
+     * Cancels the periodic refresh if no tracker has posted tiles any more.
+     */
+    public void stopIfIdle() {
+        if (PostedTileRegistry.getInstance(mContext).getTrackerIds().isEmpty()) {
+            stop();
+        }
+    }
+
+    private synchronized void stop() {
+        if (mBackend != null) {
+            mBackend.cancel(mContext);
+        }
+        mScheduled = false;
+    }
+
+    /**
+     * Runs a refresh pass in the background. onDone is called on the background thread once the
+     * posts of the pass are out, and may release the wakeup.
+     */
+    public void refresh(final Runnable onDone) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    refreshPostedTiles();
+                } finally {
+                    if (onDone != null) {
+                        onDone.run();
+                    }
+                }
+            }
+        });
+    }
+
+    private void refreshPostedTiles() {
+        long startTime = TrackerMetrics.start();
+        ShealthInitializer.getInstance().await(mContext);
+
+        PostedTileRegistry registry = PostedTileRegistry.getInstance(mContext);
+        List<String> trackerIds = registry.getTrackerIds();
+        if (trackerIds.isEmpty()) {
+            // Nothing left to refresh, SHealth starts it again on subscribe
+            stop();
+            TrackerMetrics.record(TrackerMetrics.Timer.TILE_REFRESH, startTime);
+            return;
+        }
+
+        TileStateStore store = TileStateStore.getInstance(mContext);
+        for (String trackerId : trackerIds) {
+            MyTracker controller = TrackerControllerRegistry.getInstance().getTracker(mContext, trackerId);
+            for (String tileId : registry.getPostedTileIds(trackerId)) {
+                // Default tiles show nothing that changes over time
+                if (store.isLoggedIn(trackerId, tileId)) {
+                    controller.updateTile(mContext, trackerId, tileId);
+                    TrackerMetrics.increment(TrackerMetrics.Counter.TILE_REFRESHED);
+                }
+            }
+        }
+
+        TilePostScheduler.getInstance().awaitFlushed(FLUSH_TIMEOUT_MS);
+        TrackerMetrics.record(TrackerMetrics.Timer.TILE_REFRESH, startTime);
+    }
+}
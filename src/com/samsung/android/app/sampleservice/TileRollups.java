@@ -0,0 +1,256 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import java.util.TimeZone;
+
+/**
+ * Hourly, daily and weekly rollups of the content value increments in {@link TileValueLog}.
+ * Each tile keeps a ring of buckets per granularity which is updated as increments are appended,
+ * so a query reads a fixed number of buckets however much history there is. A bucket holds the
+ * total, the number and the smallest and largest of the increments in its period. The rollups
+ * live in memory and are rebuilt from the log on first use, replaying only the period the rings
+ * cover, which the log retains. Days and weeks follow the local time zone at that point, weeks
+ * start on Monday.
+ */
+public final class TileRollups implements TileValueLog.Visitor {
+
+    private static final long HOUR_MS = 60 * 60 * 1000;
+    private static final long DAY_MS = 24 * HOUR_MS;
+    private static final long WEEK_MS = 7 * DAY_MS;
+
+    public enum Granularity {
+        HOUR(HOUR_MS, 0, 48),
+        DAY(DAY_MS, 0, 35),
+        // The epoch fell on a Thursday
+        WEEK(WEEK_MS, 3 * DAY_MS, 12);
+
+        final long periodMs;
+        final long alignMs;
+        final int slotCount;
+
+        Granularity(long periodMs, long alignMs, int slotCount) {
+            this.periodMs = periodMs;
+            this.alignMs = alignMs;
+            this.slotCount = slotCount;
+        }
+    }
+
+    private static final Granularity[] GRANULARITIES = Granularity.values();
+
+    // Long fields of a bucket
+    private static final int L_BUCKET = 0;
+    private static final int L_SUM = 1;
+    private static final int LONG_FIELD_COUNT = 2;
+
+    // Int fields of a bucket
+    private static final int I_COUNT = 0;
+    private static final int I_MIN = 1;
+    private static final int I_MAX = 2;
+    private static final int INT_FIELD_COUNT = 3;
+
+    private static TileRollups sInstance;
+
+    private final TileValueLog mLog;
+    private final TimeZone mTimeZone;
+
+    // Indexed by series of the log, guarded by this
+    private Series[] mSeries = new Series[16];
+
+    public static synchronized TileRollups getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new TileRollups(TileValueLog.getInstance(context));
+        }
+        return sInstance;
+    }
+
+    private TileRollups(TileValueLog log) {
+        mLog = log;
+        mTimeZone = TimeZone.getDefault();
+
+        long startTime = SystemClock.uptimeMillis();
+        long now = System.currentTimeMillis();
+        long from = now;
+        for (Granularity granularity : GRANULARITIES) {
+            // Start of the oldest bucket the ring keeps
+            long oldest = bucketOf(granularity, now) - granularity.slotCount + 1;
+            from = Math.min(from, oldest * granularity.periodMs - granularity.alignMs - mTimeZone.getOffset(now));
+        }
+        log.subscribe(from, this);
+        if (TrackerTrace.DEBUG) {
+            TrackerTrace.d(TrackerTrace.Event.ROLLUPS_REBUILT, null, null, SystemClock.uptimeMillis() - startTime);
+        }
+    }
+
+    @Override
+    public synchronized boolean onEntry(long timestamp, int series, int delta) {
+        Series rollup = series(series);
+        rollup.lastTimestamp = timestamp;
+
+        for (Granularity granularity : GRANULARITIES) {
+            long bucket = bucketOf(granularity, timestamp);
+            int slot = (int) (bucket % granularity.slotCount);
+            long[] longs = rollup.longs[granularity.ordinal()];
+            int[] ints = rollup.ints[granularity.ordinal()];
+            int l = slot * LONG_FIELD_COUNT;
+            int i = slot * INT_FIELD_COUNT;
+
+            if (longs[l + L_BUCKET] != bucket || ints[i + I_COUNT] == 0) {
+                // The slot holds an older bucket, start over
+                longs[l + L_BUCKET] = bucket;
+                longs[l + L_SUM] = 0;
+                ints[i + I_COUNT] = 0;
+                ints[i + I_MIN] = delta;
+                ints[i + I_MAX] = delta;
+            }
+            longs[l + L_SUM] += delta;
+            ints[i + I_COUNT]++;
+            ints[i + I_MIN] = Math.min(ints[i + I_MIN], delta);
+            ints[i + I_MAX] = Math.max(ints[i + I_MAX], delta);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the sum of the increments of the tile in the bucket containing timestamp,
+     * e.g. today's total.
+     */
+    public synchronized long getTotal(String trackerId, String tileId, Granularity granularity, long timestamp) {
+        Series rollup = find(trackerId, tileId);
+        if (rollup == null) {
+            return 0;
+        }
+
+        long bucket = bucketOf(granularity, timestamp);
+        int slot = (int) (bucket % granularity.slotCount);
+        long[] longs = rollup.longs[granularity.ordinal()];
+        return longs[slot * LONG_FIELD_COUNT + L_BUCKET] == bucket ? longs[slot * LONG_FIELD_COUNT + L_SUM] : 0;
+    }
+
+    /**
+     * Returns the number of increments of the tile in the bucket containing timestamp.
+     */
+    public int getCount(String trackerId, String tileId, Granularity granularity, long timestamp) {
+        return getInt(trackerId, tileId, granularity, timestamp, I_COUNT, 0);
+    }
+
+    /**
+     * Returns the smallest increment of the tile in the bucket containing timestamp.
+     */
+    public int getMin(String trackerId, String tileId, Granularity granularity, long timestamp, int defValue) {
+        return getInt(trackerId, tileId, granularity, timestamp, I_MIN, defValue);
+    }
+
+    /**
+     * Returns the largest increment of the tile in the bucket containing timestamp.
+     */
+    public int getMax(String trackerId, String tileId, Granularity granularity, long timestamp, int defValue) {
+        return getInt(trackerId, tileId, granularity, timestamp, I_MAX, defValue);
+    }
+
+    /**
+     * Returns the average total per bucket of the tile over the given number of buckets ending
+     * with the one containing timestamp, e.g. the 7-day average. Buckets without increments
+     * count as 0. periods is capped at the number of buckets kept for the granularity.
+     */
+    public synchronized double getAverage(String trackerId, String tileId, Granularity granularity,
+            long timestamp, int periods) {
+        periods = Math.min(periods, granularity.slotCount);
+        Series rollup = find(trackerId, tileId);
+        if (rollup == null || periods <= 0) {
+            return 0;
+        }
+
+        long[] longs = rollup.longs[granularity.ordinal()];
+        long last = bucketOf(granularity, timestamp);
+        long sum = 0;
+        for (long bucket = last - periods + 1; bucket <= last; bucket++) {
+            int slot = (int) (bucket % granularity.slotCount);
+            if (longs[slot * LONG_FIELD_COUNT + L_BUCKET] == bucket) {
+                sum += longs[slot * LONG_FIELD_COUNT + L_SUM];
+            }
+        }
+        return (double) sum / periods;
+    }
+
+    /**
+     * Returns the time of the last increment of the tile, or -1 if there is none.
+     */
+    public synchronized long getLastTimestamp(String trackerId, String tileId) {
+        Series rollup = find(trackerId, tileId);
+        return rollup != null ? rollup.lastTimestamp : -1;
+    }
+
+    private synchronized int getInt(String trackerId, String tileId, Granularity granularity, long timestamp,
+            int field, int defValue) {
+        Series rollup = find(trackerId, tileId);
+        if (rollup == null) {
+            return defValue;
+        }
+
+        long bucket = bucketOf(granularity, timestamp);
+        int slot = (int) (bucket % granularity.slotCount);
+        int[] ints = rollup.ints[granularity.ordinal()];
+        if (rollup.longs[granularity.ordinal()][slot * LONG_FIELD_COUNT + L_BUCKET] != bucket
+                || ints[slot * INT_FIELD_COUNT + I_COUNT] == 0) {
+            return defValue;
+        }
+        return ints[slot * INT_FIELD_COUNT + field];
+    }
+
+    private Series find(String trackerId, String tileId) {
+        int series = mLog.getSeries(trackerId, tileId);
+        return series >= 0 && series < mSeries.length ? mSeries[series] : null;
+    }
+
+    private Series series(int series) {
+        if (series >= mSeries.length) {
+            Series[] grown = new Series[Math.max(series + 1, mSeries.length * 2)];
+            System.arraycopy(mSeries, 0, grown, 0, mSeries.length);
+            mSeries = grown;
+        }
+        Series rollup = mSeries[series];
+        if (rollup == null) {
+            rollup = new Series();
+            mSeries[series] = rollup;
+        }
+        return rollup;
+    }
+
+    private long bucketOf(Granularity granularity, long timestamp) {
+        return (timestamp + mTimeZone.getOffset(timestamp) + granularity.alignMs) / granularity.periodMs;
+    }
+
+    // Bucket rings of one tile
+    private static final class Series {
+        final long[][] longs = new long[GRANULARITIES.length][];
+        final int[][] ints = new int[GRANULARITIES.length][];
+        long lastTimestamp = -1;
+
+        Series() {
+            for (Granularity granularity : GRANULARITIES) {
+                longs[granularity.ordinal()] = new long[granularity.slotCount * LONG_FIELD_COUNT];
+                ints[granularity.ordinal()] = new int[granularity.slotCount * INT_FIELD_COUNT];
+            }
+        }
+    }
+}
@@ -0,0 +1,388 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.content.UriMatcher;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Bulk access to the tile state of {@link TileStateStore}, next to the PluginContentProvider of the SDK.
+ * A query of content://com.samsung.android.app.sampleservice.tilestate/trackers/[trackerId]/tiles
+ * returns all tiles of the tracker in one cursor. Increments are inserted with {@link #COLUMN_TILE_ID}
+ * and {@link #COLUMN_INCREMENT}, content values and log in states are set by an update of
+ * .../tiles/[tileId]. bulkInsert and applyBatch apply all their changes as one batch after all of
+ * them were accepted, and post the changed tiles once, instead of one MyTrackerService start per tile.
+ * Reading content://com.samsung.android.app.sampleservice.tilestate/snapshot returns a
+ * {@link TrackerStateSnapshot} of all tiles and the validation keys, and writing one there restores it.
+ * Access from other apps requires android.permission.DUMP.
+ */
+public final class TileStateProvider extends ContentProvider {
+
+    private static final String LOG_TAG = "TileStateProvider";
+
+    public static final String AUTHORITY = "com.samsung.android.app.sampleservice.tilestate";
+
+    public static final String COLUMN_TRACKER_ID = "tracker_id";
+    public static final String COLUMN_TILE_ID = "tile_id";
+    public static final String COLUMN_CONTENT_VALUE = "content_value";
+    public static final String COLUMN_LOGGED_IN = "logged_in";
+    public static final String COLUMN_POSTED = "posted";
+    // Insert only, added to the content value
+    public static final String COLUMN_INCREMENT = "increment";
+
+    private static final String[] COLUMNS = {
+            COLUMN_TRACKER_ID, COLUMN_TILE_ID, COLUMN_CONTENT_VALUE, COLUMN_LOGGED_IN, COLUMN_POSTED
+    };
+
+    private static final int MATCH_TILES = 1;
+    private static final int MATCH_TILE = 2;
+    private static final int MATCH_SNAPSHOT = 3;
+
+    private static final UriMatcher sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
+
+    static {
+        sUriMatcher.addURI(AUTHORITY, "trackers/*/tiles", MATCH_TILES);
+        sUriMatcher.addURI(AUTHORITY, "trackers/*/tiles/*", MATCH_TILE);
+        sUriMatcher.addURI(AUTHORITY, "snapshot", MATCH_SNAPSHOT);
+    }
+
+    // Changes collected by the operations of the running applyBatch
+    private final ThreadLocal<List<Change>> mBatch = new ThreadLocal<List<Change>>();
+
+    // Restores written snapshots off the main thread, started on first use
+    private Handler mRestoreHandler;
+
+    public static Uri getTilesUri(String trackerId) {
+        return Uri.parse("content://" + AUTHORITY + "/trackers/" + Uri.encode(trackerId) + "/tiles");
+    }
+
+    public static Uri getTileUri(String trackerId, String tileId) {
+        return Uri.withAppendedPath(getTilesUri(trackerId), Uri.encode(tileId));
+    }
+
+    public static Uri getSnapshotUri() {
+        return Uri.parse("content://" + AUTHORITY + "/snapshot");
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        int match = match(uri);
+        String trackerId = uri.getPathSegments().get(1);
+        TileStateStore store = TileStateStore.getInstance(getContext());
+        PostedTileRegistry registry = PostedTileRegistry.getInstance(getContext());
+
+        Collection<String> tileIds;
+        if (match == MATCH_TILE) {
+            tileIds = Collections.singletonList(uri.getPathSegments().get(3));
+        } else {
+            TreeSet<String> allTileIds = new TreeSet<String>(store.getTileIds(trackerId));
+            allTileIds.addAll(registry.getPostedTileIds(trackerId));
+            tileIds = allTileIds;
+        }
+
+        MatrixCursor cursor = new MatrixCursor(COLUMNS, tileIds.size());
+        for (String tileId : tileIds) {
+            int handle = store.getHandle(trackerId, tileId);
+            boolean isPosted = registry.isPosted(trackerId, tileId);
+            if (handle == TileStateStore.NO_HANDLE && !isPosted) {
+                continue;
+            }
+            cursor.addRow(new Object[] {
+                    trackerId,
+                    tileId,
+                    store.getContentValue(handle),
+                    store.isLoggedIn(handle) ? 1 : 0,
+                    isPosted ? 1 : 0
+            });
+        }
+        cursor.setNotificationUri(getContext().getContentResolver(), getTilesUri(trackerId));
+        return cursor;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        switch (sUriMatcher.match(uri)) {
+            case MATCH_TILES:
+                return "vnd.android.cursor.dir/vnd." + AUTHORITY + ".tile";
+            case MATCH_TILE:
+                return "vnd.android.cursor.item/vnd." + AUTHORITY + ".tile";
+            case MATCH_SNAPSHOT:
+                return "application/octet-stream";
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        Change change = parse(uri, match(uri), values, true);
+        apply(Collections.singletonList(change));
+        return getTileUri(change.trackerId, change.tileId);
+    }
+
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        int match = match(uri);
+        ArrayList<Change> changes = new ArrayList<Change>(values.length);
+        // All values are checked before any is applied
+        for (ContentValues value : values) {
+            changes.add(parse(uri, match, value, true));
+        }
+        apply(changes);
+        return values.length;
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        if (match(uri) != MATCH_TILE) {
+            throw new IllegalArgumentException("Update requires a tile uri " + uri);
+        }
+        apply(Collections.singletonList(parse(uri, MATCH_TILE, values, false)));
+        return 1;
+    }
+
+    /**
+     * Deletes nothing and returns 0. Tile state lives as long as the tile is posted, a tile is
+     * reset by an update of its content value instead.
+     */
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        return 0;
+    }
+
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        if (sUriMatcher.match(uri) != MATCH_SNAPSHOT) {
+            throw new FileNotFoundException("No file at " + uri);
+        }
+
+        final Context context = getContext();
+        final File file;
+        try {
+            file = File.createTempFile("snapshot", null, context.getCacheDir());
+        } catch (IOException e) {
+            throw new FileNotFoundException(e.toString());
+        }
+
+        if (!mode.contains("w")) {
+            try {
+                TrackerStateSnapshot.export(context, file);
+                // The open descriptor keeps the content readable
+                return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+            } catch (IOException e) {
+                throw new FileNotFoundException(e.toString());
+            } finally {
+                file.delete();
+            }
+        }
+
+        try {
+            return ParcelFileDescriptor.open(file,
+                    ParcelFileDescriptor.MODE_WRITE_ONLY | ParcelFileDescriptor.MODE_TRUNCATE,
+                    getRestoreHandler(), new ParcelFileDescriptor.OnCloseListener() {
+                        @Override
+                        public void onClose(IOException e) {
+                            try {
+                                if (e == null) {
+                                    restore(context, file);
+                                } else {
+                                    Log.d(LOG_TAG, "snapshot write failed " + e.toString());
+                                }
+                            } finally {
+                                file.delete();
+                            }
+                        }
+                    });
+        } catch (IOException e) {
+            file.delete();
+            throw new FileNotFoundException(e.toString());
+        }
+    }
+
+    private synchronized Handler getRestoreHandler() {
+        if (mRestoreHandler == null) {
+            HandlerThread thread = new HandlerThread(LOG_TAG);
+            thread.start();
+            mRestoreHandler = new Handler(thread.getLooper());
+        }
+        return mRestoreHandler;
+    }
+
+    private static void restore(Context context, File file) {
+        try {
+            TrackerStateSnapshot.restore(context, file);
+        } catch (IOException e) {
+            Log.d(LOG_TAG, "restore() IOException " + e.toString());
+            return;
+        }
+
+        // Observers of any tracker are below this uri
+        context.getContentResolver().notifyChange(Uri.parse("content://" + AUTHORITY + "/trackers"), null);
+        // Tiles SHealth still shows get the restored content in one pass
+        TileRefreshScheduler.getInstance(context).refresh(null);
+    }
+
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        ArrayList<Change> batch = new ArrayList<Change>(operations.size());
+        ContentProviderResult[] results;
+        mBatch.set(batch);
+        try {
+            // The operations only collect their changes, nothing is applied if one of them fails
+            results = super.applyBatch(operations);
+        } finally {
+            mBatch.remove();
+        }
+        commit(batch);
+        return results;
+    }
+
+    private void apply(List<Change> changes) {
+        List<Change> batch = mBatch.get();
+        if (batch != null) {
+            batch.addAll(changes);
+        } else {
+            commit(changes);
+        }
+    }
+
+    private void commit(final List<Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        Context context = getContext();
+        final TileStateStore store = TileStateStore.getInstance(context);
+        final int[] contentValues = new int[changes.size()];
+        store.runBatch(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < contentValues.length; i++) {
+                    Change change = changes.get(i);
+                    if (change.isLoggedIn != null) {
+                        store.setLoggedIn(change.trackerId, change.tileId, change.isLoggedIn);
+                    }
+                    if (change.increment != null) {
+                        contentValues[i] = store.addContentValue(change.trackerId, change.tileId, change.increment);
+                    } else if (change.contentValue != null) {
+                        store.setContentValue(change.trackerId, change.tileId, change.contentValue);
+                        contentValues[i] = change.contentValue;
+                    }
+                }
+            }
+        });
+
+        TileValueLog log = TileValueLog.getInstance(context);
+        PostedTileRegistry registry = PostedTileRegistry.getInstance(context);
+        HashSet<String> trackerIds = new HashSet<String>();
+        for (int i = 0; i < contentValues.length; i++) {
+            Change change = changes.get(i);
+            trackerIds.add(change.trackerId);
+            // Only increments are history, setting the value, e.g. a reset, is not
+            if (change.increment != null) {
+                log.append(change.trackerId, change.tileId, change.increment);
+            }
+
+            // Tiles SHealth does not show are not posted, the posts of a tile changed more than once merge
+            if (registry.isPosted(change.trackerId, change.tileId)) {
+                MyTracker tracker = TrackerControllerRegistry.getInstance().getTracker(context, change.trackerId);
+                if (store.isLoggedIn(change.trackerId, change.tileId)) {
+                    tracker.updateTile(context, change.trackerId, change.tileId);
+                } else {
+                    tracker.postDefaultTile(context, change.trackerId, change.tileId);
+                }
+            }
+        }
+
+        for (String trackerId : trackerIds) {
+            context.getContentResolver().notifyChange(getTilesUri(trackerId), null);
+        }
+    }
+
+    private static int match(Uri uri) {
+        int match = sUriMatcher.match(uri);
+        if (match != MATCH_TILES && match != MATCH_TILE) {
+            throw new IllegalArgumentException("Unknown uri " + uri);
+        }
+        return match;
+    }
+
+    private static Change parse(Uri uri, int match, ContentValues values, boolean isInsert) {
+        String trackerId = uri.getPathSegments().get(1);
+        String tileId = match == MATCH_TILE ? uri.getPathSegments().get(3) : values.getAsString(COLUMN_TILE_ID);
+        if (tileId == null || tileId.isEmpty()) {
+            throw new IllegalArgumentException("No " + COLUMN_TILE_ID + " in " + values);
+        }
+
+        Integer increment = isInsert ? values.getAsInteger(COLUMN_INCREMENT) : null;
+        Integer contentValue = values.getAsInteger(COLUMN_CONTENT_VALUE);
+        Boolean isLoggedIn = values.getAsBoolean(COLUMN_LOGGED_IN);
+        if (increment != null && contentValue != null) {
+            throw new IllegalArgumentException("Both " + COLUMN_INCREMENT + " and " + COLUMN_CONTENT_VALUE + " in " + values);
+        }
+        if (increment == null && contentValue == null && isLoggedIn == null) {
+            throw new IllegalArgumentException("Nothing to change in " + values);
+        }
+        return new Change(trackerId, tileId, increment, contentValue, isLoggedIn);
+    }
+
+    private static final class Change {
+        final String trackerId;
+        final String tileId;
+        final Integer increment;
+        final Integer contentValue;
+        final Boolean isLoggedIn;
+
+        Change(String trackerId, String tileId, Integer increment, Integer contentValue, Boolean isLoggedIn) {
+            this.trackerId = trackerId;
+            this.tileId = tileId;
+            this.increment = increment;
+            this.contentValue = contentValue;
+            this.isLoggedIn = isLoggedIn;
+        }
+    }
+}
@@ -0,0 +1,539 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory state of each tile, held in a {@link TileStateTable}.
+ * A tile is addressed by (trackerId, tileId) or by the int handle these are interned into.
+ * Fields are atomic ints, so reads by handle take no lock and concurrent increments are never
+ * lost. Updates by (trackerId, tileId) are not lock-free: the lookup and the update run under the
+ * table lock, so a concurrent removeTile cannot release the handle in between.
+ * Changed tiles are written in batches to an append-only journal which is compacted into a
+ * {@link TrackerStateSnapshot} once it grows, and the state is recovered from snapshot and journal
+ * on first access.
+ */
+public final class TileStateStore {
+
+    private static final String LOG_TAG = "TileStateStore";
+
+    public static final int NO_HANDLE = TileStateTable.NO_HANDLE;
+
+    // Fields of a tile
+    private static final int FIELD_CONTENT_VALUE = 0;
+    private static final int FIELD_LOG_IN = 1;
+    private static final int FIELD_DIRTY = 2;
+    private static final int FIELD_COUNT = 3;
+
+    // Legacy storage imported on first start, holding the state of the single sample tile
+    private static final String SHARED_PREFERENCE_NAME = "tile_content";
+    private static final String LEGACY_KEY_CONTENT_VALUE = "content_value";
+    private static final String LEGACY_KEY_LOG_IN = "log_in";
+    private static final String LEGACY_TRACKER_ID = "tracker.sample";
+    private static final String LEGACY_TILE_ID = "sample_tile";
+
+    private static final String SNAPSHOT_FILE_NAME = "tile_state.snapshot";
+    private static final String JOURNAL_FILE_NAME = "tile_state.journal";
+
+    // "TSS2", per-tile records of the journal
+    private static final int FILE_MAGIC = 0x54535332;
+
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_REMOVE = 2;
+
+    private static final long FLUSH_DELAY_MS = 1000;
+    private static final long COMPACTION_THRESHOLD_BYTES = 64 * 1024;
+
+    private static TileStateStore sInstance;
+
+    private final File mSnapshotFile;
+    private final File mJournalFile;
+
+    private final TileStateTable mTable = new TileStateTable(FIELD_COUNT);
+    private final TileStateStream mStream = TileStateStream.getInstance();
+
+    // Tiles removed since the last flush, as (trackerId, tileId), guarded by this
+    private final ArrayList<String[]> mRemovedTiles = new ArrayList<String[]>();
+
+    private final AtomicBoolean mFlushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService mExecutor;
+
+    // Accessed only under the flush lock
+    private int mGeneration;
+    private DataOutputStream mJournal;
+    private long mJournalSize;
+
+    public static synchronized TileStateStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new TileStateStore(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private TileStateStore(Context context) {
+        File dir = context.getFilesDir();
+        mSnapshotFile = new File(dir, SNAPSHOT_FILE_NAME);
+        mJournalFile = new File(dir, JOURNAL_FILE_NAME);
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, LOG_TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        if (mSnapshotFile.exists() || mJournalFile.exists()) {
+            recover();
+        } else {
+            importSharedPreferences(context);
+        }
+    }
+
+    /**
+     * Returns the handle of the tile or {@link #NO_HANDLE} if it has no state.
+     */
+    public int getHandle(String trackerId, String tileId) {
+        return mTable.get(trackerId, tileId);
+    }
+
+    /**
+     * Returns the handle of the tile, creating its state if needed.
+     */
+    public int acquireHandle(String trackerId, String tileId) {
+        return mTable.intern(trackerId, tileId);
+    }
+
+    public int getContentValue(int handle) {
+        return mTable.getField(handle, FIELD_CONTENT_VALUE);
+    }
+
+    public boolean isLoggedIn(int handle) {
+        return mTable.getField(handle, FIELD_LOG_IN) != 0;
+    }
+
+    public int getContentValue(String trackerId, String tileId) {
+        int handle = mTable.get(trackerId, tileId);
+        return handle != NO_HANDLE ? getContentValue(handle) : 0;
+    }
+
+    public boolean isLoggedIn(String trackerId, String tileId) {
+        int handle = mTable.get(trackerId, tileId);
+        return handle != NO_HANDLE && isLoggedIn(handle);
+    }
+
+    /**
+     * Atomically adds delta to the content value of the tile and returns the new value.
+     */
+    public int addContentValue(String trackerId, String tileId, int delta) {
+        int value;
+        boolean dirtied;
+        // The table lock keeps a concurrent removeTile or restore from releasing the handle in between
+        synchronized (mTable) {
+            int handle = mTable.intern(trackerId, tileId);
+            value = mTable.addField(handle, FIELD_CONTENT_VALUE, delta);
+            dirtied = setDirty(handle);
+        }
+        if (dirtied) {
+            scheduleFlush();
+        }
+        mStream.publish(trackerId, tileId);
+        return value;
+    }
+
+    public void setContentValue(String trackerId, String tileId, int value) {
+        setField(trackerId, tileId, FIELD_CONTENT_VALUE, value);
+    }
+
+    public void setLoggedIn(String trackerId, String tileId, boolean isLoggedIn) {
+        setField(trackerId, tileId, FIELD_LOG_IN, isLoggedIn ? 1 : 0);
+    }
+
+    private void setField(String trackerId, String tileId, int field, int value) {
+        boolean dirtied;
+        synchronized (mTable) {
+            int handle = mTable.intern(trackerId, tileId);
+            mTable.setField(handle, field, value);
+            dirtied = setDirty(handle);
+        }
+        if (dirtied) {
+            scheduleFlush();
+        }
+        mStream.publish(trackerId, tileId);
+    }
+
+    /**
+     * Sets the log in state of all tiles of trackerId.
+     */
+    public void setLoggedIn(String trackerId, boolean isLoggedIn) {
+        int limit = mTable.getHandleLimit();
+        for (int handle = 0; handle < limit; handle++) {
+            String tileId;
+            boolean dirtied;
+            synchronized (mTable) {
+                tileId = mTable.getTileId(handle);
+                if (tileId == null || !trackerId.equals(mTable.getTrackerId(handle))
+                        || mTable.getField(handle, FIELD_LOG_IN) == (isLoggedIn ? 1 : 0)) {
+                    continue;
+                }
+                mTable.setField(handle, FIELD_LOG_IN, isLoggedIn ? 1 : 0);
+                dirtied = setDirty(handle);
+            }
+            if (dirtied) {
+                scheduleFlush();
+            }
+            mStream.publish(trackerId, tileId);
+        }
+    }
+
+    /**
+     * Frees the state of the tile.
+     */
+    public void removeTile(String trackerId, String tileId) {
+        synchronized (this) {
+            if (mTable.release(trackerId, tileId) == NO_HANDLE) {
+                return;
+            }
+            mRemovedTiles.add(new String[] { trackerId, tileId });
+        }
+        scheduleFlush();
+        mStream.publish(trackerId, tileId);
+    }
+
+    public int getTileCount() {
+        return mTable.size();
+    }
+
+    /**
+     * Returns the ids of the tiles of trackerId which have state.
+     */
+    public List<String> getTileIds(String trackerId) {
+        ArrayList<String> tileIds = new ArrayList<String>();
+        int limit = mTable.getHandleLimit();
+        for (int handle = 0; handle < limit; handle++) {
+            String tileId = mTable.getTileId(handle);
+            if (tileId != null && trackerId.equals(mTable.getTrackerId(handle))) {
+                tileIds.add(tileId);
+            }
+        }
+        return tileIds;
+    }
+
+    /**
+     * Runs changes while holding off flushes, so they are written to the journal in the same flush.
+     */
+    public void runBatch(Runnable changes) {
+        synchronized (this) {
+            changes.run();
+        }
+    }
+
+    /**
+     * Writes all pending changes to the journal on the calling thread.
+     */
+    public void flush() {
+        mFlushScheduled.set(false);
+        synchronized (this) {
+            try {
+                writeChanges();
+                if (mJournalSize >= COMPACTION_THRESHOLD_BYTES) {
+                    compact();
+                }
+            } catch (IOException e) {
+                Log.d(LOG_TAG, "flush() IOException " + e.toString());
+            }
+        }
+    }
+
+    // Returns true if the tile was clean, in which case a flush has to be scheduled
+    private boolean setDirty(int handle) {
+        return mTable.getAndSetField(handle, FIELD_DIRTY, 1) == 0;
+    }
+
+    private void scheduleFlush() {
+        if (mFlushScheduled.compareAndSet(false, true)) {
+            mExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void writeChanges() throws IOException {
+        DataOutputStream journal = null;
+
+        // Removals first, so a tile removed and added again within one batch ends up added
+        if (!mRemovedTiles.isEmpty()) {
+            journal = openJournal();
+            for (String[] tile : mRemovedTiles) {
+                journal.writeByte(RECORD_REMOVE);
+                journal.writeUTF(tile[0]);
+                journal.writeUTF(tile[1]);
+            }
+            mRemovedTiles.clear();
+        }
+
+        int limit = mTable.getHandleLimit();
+        for (int handle = 0; handle < limit; handle++) {
+            // Clear before reading so a concurrent change marks the tile dirty again
+            if (mTable.getAndSetField(handle, FIELD_DIRTY, 0) == 0) {
+                continue;
+            }
+            String trackerId = mTable.getTrackerId(handle);
+            String tileId = mTable.getTileId(handle);
+            if (trackerId == null || tileId == null) {
+                continue;
+            }
+            if (journal == null) {
+                journal = openJournal();
+            }
+            journal.writeByte(RECORD_PUT);
+            journal.writeUTF(trackerId);
+            journal.writeUTF(tileId);
+            journal.writeInt(mTable.getField(handle, FIELD_CONTENT_VALUE));
+            journal.writeInt(mTable.getField(handle, FIELD_LOG_IN));
+        }
+
+        if (journal != null) {
+            journal.flush();
+            mJournalSize = mJournalFile.length();
+        }
+    }
+
+    private DataOutputStream openJournal() throws IOException {
+        if (mJournal == null) {
+            boolean isNew = !mJournalFile.exists() || mJournalFile.length() == 0;
+            mJournal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(mJournalFile, true)));
+            if (isNew) {
+                mJournal.writeInt(FILE_MAGIC);
+                mJournal.writeInt(mGeneration);
+            }
+        }
+        return mJournal;
+    }
+
+    /**
+     * Writes the state of all tiles to file as a {@link TrackerStateSnapshot}, with the given
+     * validation keys if they are not null.
+     */
+    synchronized void writeSnapshot(File file, int generation, String key, String previousKey) throws IOException {
+        // Tiles added while writing are still dirty and go to the journal of the next generation
+        int limit = mTable.getHandleLimit();
+        int[] handles = new int[limit];
+        int count = 0;
+        for (int handle = 0; handle < limit; handle++) {
+            if (mTable.getTrackerId(handle) != null) {
+                handles[count++] = handle;
+            }
+        }
+
+        TrackerStateSnapshot.Writer writer = new TrackerStateSnapshot.Writer(file, generation, count, key, previousKey);
+        try {
+            for (int i = 0; i < count; i++) {
+                // Removals take the flush lock, so the tiles are still there
+                int handle = handles[i];
+                String trackerId = mTable.getTrackerId(handle);
+                String tileId = mTable.getTileId(handle);
+                writer.writeTile(trackerId != null ? trackerId : "", tileId != null ? tileId : "",
+                        mTable.getField(handle, FIELD_CONTENT_VALUE), mTable.getField(handle, FIELD_LOG_IN) != 0);
+            }
+        } catch (IOException e) {
+            writer.abort();
+            throw e;
+        }
+        writer.commit();
+    }
+
+    /**
+     * Replaces the state of all tiles with the given ones, trackerIds and tileIds alternating in ids
+     * and {contentValue, logIn} in fields, and compacts so the new state is the snapshot.
+     */
+    synchronized void restoreSnapshot(List<String> ids, List<int[]> fields) throws IOException {
+        // The compaction below supersedes the journal, so nothing is journaled
+        mRemovedTiles.clear();
+        int limit = mTable.getHandleLimit();
+        for (int handle = 0; handle < limit; handle++) {
+            String trackerId = mTable.getTrackerId(handle);
+            String tileId = mTable.getTileId(handle);
+            if (trackerId != null && tileId != null) {
+                mTable.release(trackerId, tileId);
+                mStream.publish(trackerId, tileId);
+            }
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            String trackerId = ids.get(2 * i);
+            String tileId = ids.get(2 * i + 1);
+            if (!trackerId.isEmpty() && !tileId.isEmpty()) {
+                put(trackerId, tileId, fields.get(i)[0], fields.get(i)[1]);
+                mStream.publish(trackerId, tileId);
+            }
+        }
+
+        compact();
+    }
+
+    // Replaces the snapshot with the current state and starts a new journal generation
+    private void compact() throws IOException {
+        int generation = mGeneration + 1;
+        writeSnapshot(mSnapshotFile, generation, null, null);
+
+        // A journal left behind by a crash here has an older generation and is ignored on recovery
+        if (mJournal != null) {
+            mJournal.close();
+            mJournal = null;
+        }
+        mGeneration = generation;
+        truncate(mJournalFile, 0);
+        mJournalSize = 0;
+    }
+
+    private synchronized void recover() {
+        int snapshotGeneration = 0;
+        if (mSnapshotFile.exists()) {
+            try {
+                if (TrackerStateSnapshot.isSnapshot(mSnapshotFile)) {
+                    snapshotGeneration = TrackerStateSnapshot.read(mSnapshotFile, new TrackerStateSnapshot.Visitor() {
+                        @Override
+                        public void onValidationKeys(String key, String previousKey) {
+                            // Kept by ValidationKeyVerifier
+                        }
+
+                        @Override
+                        public void onTile(String trackerId, String tileId, int contentValue, boolean isLoggedIn) {
+                            if (!trackerId.isEmpty() && !tileId.isEmpty()) {
+                                put(trackerId, tileId, contentValue, isLoggedIn ? 1 : 0);
+                            }
+                        }
+                    });
+                }
+            } catch (IOException e) {
+                Log.d(LOG_TAG, "recover() snapshot IOException " + e.toString());
+            }
+        }
+        mGeneration = snapshotGeneration;
+
+        if (mJournalFile.exists()) {
+            long validLength = 0;
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mJournalFile)));
+                try {
+                    int magic = in.readInt();
+                    int generation = in.readInt();
+                    if (magic == FILE_MAGIC && generation == snapshotGeneration) {
+                        validLength = 8;
+                        while (true) {
+                            byte type = in.readByte();
+                            String trackerId = in.readUTF();
+                            String tileId = in.readUTF();
+                            long length = 1 + 2 + utfLength(trackerId) + 2 + utfLength(tileId);
+                            if (type == RECORD_PUT) {
+                                int value = in.readInt();
+                                int logIn = in.readInt();
+                                put(trackerId, tileId, value, logIn);
+                                length += 8;
+                            } else if (type == RECORD_REMOVE) {
+                                mTable.release(trackerId, tileId);
+                            } else {
+                                break;
+                            }
+                            validLength += length;
+                        }
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (EOFException e) {
+                // End of journal, possibly with a torn last record
+            } catch (IOException e) {
+                Log.d(LOG_TAG, "recover() journal IOException " + e.toString());
+            }
+
+            try {
+                // Drop a torn tail or a stale generation so appends continue from a clean record
+                truncate(mJournalFile, validLength);
+            } catch (IOException e) {
+                Log.d(LOG_TAG, "recover() truncate IOException " + e.toString());
+            }
+            mJournalSize = validLength;
+        }
+    }
+
+    private void put(String trackerId, String tileId, int value, int logIn) {
+        int handle = mTable.intern(trackerId, tileId);
+        mTable.setField(handle, FIELD_CONTENT_VALUE, value);
+        mTable.setField(handle, FIELD_LOG_IN, logIn);
+    }
+
+    private void importSharedPreferences(Context context) {
+        SharedPreferences sp = context.getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE);
+        if (sp.contains(LEGACY_KEY_CONTENT_VALUE)) {
+            setContentValue(LEGACY_TRACKER_ID, LEGACY_TILE_ID, sp.getInt(LEGACY_KEY_CONTENT_VALUE, 0));
+        }
+        if (sp.contains(LEGACY_KEY_LOG_IN)) {
+            setLoggedIn(LEGACY_TRACKER_ID, LEGACY_TILE_ID, sp.getBoolean(LEGACY_KEY_LOG_IN, false));
+        }
+    }
+
+    private static void truncate(File file, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static int utfLength(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length++;
+            } else if (c > 0x07FF) {
+                length += 3;
+            } else {
+                length += 2;
+            }
+        }
+        return length;
+    }
+}
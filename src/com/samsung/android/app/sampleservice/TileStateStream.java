@@ -0,0 +1,138 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Stream of tile state changes.
+ * TileStateStore and PostedTileRegistry publish the (trackerId, tileId) of every tile they change.
+ * Changes are coalesced and delivered on the main thread, so an observer receives each changed tile
+ * once per main loop iteration however often it was written, and reads its current state itself.
+ * Nothing is kept while there are no observers.
+ */
+public final class TileStateStream {
+
+    public interface Observer {
+        /**
+         * Called on the main thread with the tile ids of trackerId which changed since the last call.
+         */
+        void onTilesChanged(String trackerId, Set<String> tileIds);
+    }
+
+    private static TileStateStream sInstance;
+
+    private final CopyOnWriteArrayList<Subscription> mSubscriptions = new CopyOnWriteArrayList<Subscription>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Changed tile ids per tracker not dispatched yet, guarded by this
+    private HashMap<String, Set<String>> mChanged = new HashMap<String, Set<String>>();
+    private boolean mDispatchScheduled;
+
+    private final Runnable mDispatch = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+        }
+    };
+
+    public static synchronized TileStateStream getInstance() {
+        if (sInstance == null) {
+            sInstance = new TileStateStream();
+        }
+        return sInstance;
+    }
+
+    private TileStateStream() {
+    }
+
+    /**
+     * Registers observer for the changes of the tiles of trackerId.
+     */
+    public void subscribe(String trackerId, Observer observer) {
+        mSubscriptions.add(new Subscription(trackerId, observer));
+    }
+
+    public void unsubscribe(Observer observer) {
+        for (Subscription subscription : mSubscriptions) {
+            if (subscription.observer == observer) {
+                mSubscriptions.remove(subscription);
+            }
+        }
+    }
+
+    /**
+     * Reports a change of the state of the tile, may be called on any thread.
+     */
+    public void publish(String trackerId, String tileId) {
+        if (mSubscriptions.isEmpty()) {
+            return;
+        }
+
+        boolean schedule;
+        synchronized (this) {
+            Set<String> tileIds = mChanged.get(trackerId);
+            if (tileIds == null) {
+                tileIds = new HashSet<String>();
+                mChanged.put(trackerId, tileIds);
+            }
+            tileIds.add(tileId);
+            schedule = !mDispatchScheduled;
+            mDispatchScheduled = true;
+        }
+        if (schedule) {
+            mMainHandler.post(mDispatch);
+        }
+    }
+
+    private void dispatch() {
+        HashMap<String, Set<String>> changed;
+        synchronized (this) {
+            changed = mChanged;
+            mChanged = new HashMap<String, Set<String>>();
+            mDispatchScheduled = false;
+        }
+
+        for (Map.Entry<String, Set<String>> entry : changed.entrySet()) {
+            for (Subscription subscription : mSubscriptions) {
+                if (subscription.trackerId.equals(entry.getKey())) {
+                    subscription.observer.onTilesChanged(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+                }
+            }
+        }
+    }
+
+    private static final class Subscription {
+        final String trackerId;
+        final Observer observer;
+
+        Subscription(String trackerId, Observer observer) {
+            this.trackerId = trackerId;
+            this.observer = observer;
+        }
+    }
+}
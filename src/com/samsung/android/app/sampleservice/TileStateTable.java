@@ -0,0 +1,273 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Per-tile int fields addressed by int handles.
+ * (trackerId, tileId) pairs are interned into small handles through an open addressing table,
+ * and the fields of a handle live in fixed-size segments of an AtomicIntegerArray, so fields are
+ * read and updated without boxing. Looking up, interning and releasing a tile synchronize on the
+ * table; a caller holding that lock keeps a handle from being released and reused while it
+ * updates the fields. A segment is dropped once all of its handles are released.
+ */
+final class TileStateTable {
+
+    static final int NO_HANDLE = -1;
+
+    private static final int SEGMENT_SHIFT = 8;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private static final int INITIAL_SLOT_COUNT = 16;
+
+    private final int mFieldCount;
+
+    // Field storage, one segment per SEGMENT_SIZE handles
+    private volatile AtomicIntegerArray[] mSegments = new AtomicIntegerArray[1];
+    private int[] mSegmentUsage = new int[1];
+
+    // Names of the handles, null if the handle is free
+    private String[] mTrackerIds = new String[SEGMENT_SIZE];
+    private String[] mTileIds = new String[SEGMENT_SIZE];
+
+    // Linear probing table of handle + 1, 0 marks an empty slot
+    private int[] mSlots = new int[INITIAL_SLOT_COUNT];
+
+    private final BitSet mUsedHandles = new BitSet();
+    private int mSize;
+
+    TileStateTable(int fieldCount) {
+        mFieldCount = fieldCount;
+    }
+
+    /**
+     * Returns the handle of the tile or {@link #NO_HANDLE}.
+     */
+    synchronized int get(String trackerId, String tileId) {
+        int slot = find(trackerId, tileId);
+        return slot >= 0 ? mSlots[slot] - 1 : NO_HANDLE;
+    }
+
+    /**
+     * Returns the handle of the tile, allocating one with zeroed fields if needed.
+     */
+    synchronized int intern(String trackerId, String tileId) {
+        int slot = find(trackerId, tileId);
+        if (slot >= 0) {
+            return mSlots[slot] - 1;
+        }
+
+        if ((mSize + 1) * 4 > mSlots.length * 3) {
+            rehash(mSlots.length * 2);
+            slot = find(trackerId, tileId);
+        }
+
+        int handle = mUsedHandles.nextClearBit(0);
+        ensureCapacity(handle);
+        mUsedHandles.set(handle);
+        mSize++;
+
+        int segment = handle >>> SEGMENT_SHIFT;
+        if (mSegments[segment] == null) {
+            AtomicIntegerArray[] segments = mSegments.clone();
+            segments[segment] = new AtomicIntegerArray(SEGMENT_SIZE * mFieldCount);
+            mSegments = segments;
+        } else {
+            clearFields(handle);
+        }
+        mSegmentUsage[segment]++;
+
+        mTrackerIds[handle] = trackerId;
+        mTileIds[handle] = tileId;
+        mSlots[-slot - 1] = handle + 1;
+        return handle;
+    }
+
+    /**
+     * Releases the handle of the tile and returns it, or {@link #NO_HANDLE} if it was not interned.
+     */
+    synchronized int release(String trackerId, String tileId) {
+        int slot = find(trackerId, tileId);
+        if (slot < 0) {
+            return NO_HANDLE;
+        }
+
+        int handle = mSlots[slot] - 1;
+        removeSlot(slot);
+        mUsedHandles.clear(handle);
+        mSize--;
+        mTrackerIds[handle] = null;
+        mTileIds[handle] = null;
+
+        int segment = handle >>> SEGMENT_SHIFT;
+        if (--mSegmentUsage[segment] == 0) {
+            AtomicIntegerArray[] segments = mSegments.clone();
+            segments[segment] = null;
+            mSegments = segments;
+        } else {
+            clearFields(handle);
+        }
+        return handle;
+    }
+
+    synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns one more than the highest handle that may be in use.
+     */
+    int getHandleLimit() {
+        return mSegments.length * SEGMENT_SIZE;
+    }
+
+    synchronized String getTrackerId(int handle) {
+        return handle >= 0 && handle < mTrackerIds.length ? mTrackerIds[handle] : null;
+    }
+
+    synchronized String getTileId(int handle) {
+        return handle >= 0 && handle < mTileIds.length ? mTileIds[handle] : null;
+    }
+
+    /**
+     * Returns the field of handle, or 0 if the handle is not in use.
+     */
+    int getField(int handle, int field) {
+        AtomicIntegerArray segment = segment(handle);
+        return segment != null ? segment.get(index(handle, field)) : 0;
+    }
+
+    void setField(int handle, int field, int value) {
+        AtomicIntegerArray segment = segment(handle);
+        if (segment != null) {
+            segment.set(index(handle, field), value);
+        }
+    }
+
+    int addField(int handle, int field, int delta) {
+        AtomicIntegerArray segment = segment(handle);
+        return segment != null ? segment.addAndGet(index(handle, field), delta) : 0;
+    }
+
+    int getAndSetField(int handle, int field, int value) {
+        AtomicIntegerArray segment = segment(handle);
+        return segment != null ? segment.getAndSet(index(handle, field), value) : 0;
+    }
+
+    private AtomicIntegerArray segment(int handle) {
+        AtomicIntegerArray[] segments = mSegments;
+        int segment = handle >>> SEGMENT_SHIFT;
+        return handle >= 0 && segment < segments.length ? segments[segment] : null;
+    }
+
+    private int index(int handle, int field) {
+        return (handle & SEGMENT_MASK) * mFieldCount + field;
+    }
+
+    private void clearFields(int handle) {
+        AtomicIntegerArray segment = mSegments[handle >>> SEGMENT_SHIFT];
+        int base = index(handle, 0);
+        for (int i = 0; i < mFieldCount; i++) {
+            segment.set(base + i, 0);
+        }
+    }
+
+    private void ensureCapacity(int handle) {
+        int segmentCount = (handle >>> SEGMENT_SHIFT) + 1;
+        if (segmentCount <= mSegments.length) {
+            return;
+        }
+
+        int newCount = Math.max(segmentCount, mSegments.length * 2);
+        String[] trackerIds = new String[newCount * SEGMENT_SIZE];
+        String[] tileIds = new String[newCount * SEGMENT_SIZE];
+        System.arraycopy(mTrackerIds, 0, trackerIds, 0, mTrackerIds.length);
+        System.arraycopy(mTileIds, 0, tileIds, 0, mTileIds.length);
+        mTrackerIds = trackerIds;
+        mTileIds = tileIds;
+
+        int[] usage = new int[newCount];
+        System.arraycopy(mSegmentUsage, 0, usage, 0, mSegmentUsage.length);
+        mSegmentUsage = usage;
+
+        AtomicIntegerArray[] segments = new AtomicIntegerArray[newCount];
+        System.arraycopy(mSegments, 0, segments, 0, mSegments.length);
+        mSegments = segments;
+    }
+
+    // Returns the slot of the tile, or -(insertion slot) - 1 if it is not in the table
+    private int find(String trackerId, String tileId) {
+        int mask = mSlots.length - 1;
+        int slot = hash(trackerId, tileId) & mask;
+        while (true) {
+            int entry = mSlots[slot];
+            if (entry == 0) {
+                return -slot - 1;
+            }
+            int handle = entry - 1;
+            if (tileId.equals(mTileIds[handle]) && trackerId.equals(mTrackerIds[handle])) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // Backward shift deletion keeps probe sequences intact without tombstones
+    private void removeSlot(int slot) {
+        int mask = mSlots.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (mSlots[next] != 0) {
+            int handle = mSlots[next] - 1;
+            int home = hash(mTrackerIds[handle], mTileIds[handle]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                mSlots[hole] = mSlots[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        mSlots[hole] = 0;
+    }
+
+    private void rehash(int slotCount) {
+        int[] oldSlots = mSlots;
+        mSlots = new int[slotCount];
+        int mask = slotCount - 1;
+        for (int entry : oldSlots) {
+            if (entry == 0) {
+                continue;
+            }
+            int handle = entry - 1;
+            int slot = hash(mTrackerIds[handle], mTileIds[handle]) & mask;
+            while (mSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            mSlots[slot] = entry;
+        }
+    }
+
+    private static int hash(String trackerId, String tileId) {
+        int h = trackerId.hashCode() * 31 + tileId.hashCode();
+        // Spread the high bits as the table index only uses the low ones
+        return h ^ (h >>> 16);
+    }
+}
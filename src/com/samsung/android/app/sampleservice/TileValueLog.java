@@ -0,0 +1,498 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Append-only history of tile content value increments.
+ * Each increment is a 16 byte (timestamp, series, delta) entry, where a series is a stable int id
+ * of a (trackerId, tileId) pair. Entries go to memory-mapped segment files which roll over by size
+ * and age; the mappings are forced to disk in batches rather than per entry. Timestamps never
+ * decrease, so a segment can be searched by time with a binary search. Entries are kept for
+ * {@link #RETENTION_MS}, which covers the longest rollup of {@link TileRollups}.
+ */
+public final class TileValueLog {
+
+    private static final String LOG_TAG = "TileValueLog";
+
+    private static final String DIR_NAME = "tile_values";
+    private static final String SERIES_FILE_NAME = "series";
+    private static final String SEGMENT_FILE_SUFFIX = ".seg";
+
+    // "TVL2", entries hold deltas
+    private static final int SEGMENT_MAGIC = 0x54564c32;
+
+    static final int ENTRY_SIZE = 16;
+    private static final int HEADER_SIZE = 16;
+    private static final int SEGMENT_SIZE = 256 * 1024;
+    private static final int SEGMENT_CAPACITY = (SEGMENT_SIZE - HEADER_SIZE) / ENTRY_SIZE;
+
+    private static final long DAY_MS = 24 * 60 * 60 * 1000;
+    private static final long SEGMENT_MAX_AGE_MS = 7 * DAY_MS;
+
+    // The 12 weekly buckets of TileRollups, plus a day as their bounds follow the local time zone
+    static final long RETENTION_MS = (12 * 7 + 1) * DAY_MS;
+    // Bounds the disk use, only a sustained high rate of increments shortens the retention
+    private static final int MAX_SEGMENT_COUNT = 128;
+
+    private static final long FORCE_DELAY_MS = 2000;
+
+    public interface Visitor {
+        /**
+         * Called for each entry in time order. Returns false to stop the scan.
+         */
+        boolean onEntry(long timestamp, int series, int delta);
+    }
+
+    private static TileValueLog sInstance;
+
+    private final File mDir;
+    private final File mSeriesFile;
+
+    // Series ids are never released, so interning them in file order restores the same ids
+    private final TileStateTable mSeries = new TileStateTable(0);
+
+    // Oldest first, the last one is appended to; replaced on roll over
+    private volatile Segment[] mSegments = new Segment[0];
+
+    private long mLastTimestamp;
+
+    // Called with each appended entry, guarded by this
+    private final ArrayList<Visitor> mSubscribers = new ArrayList<Visitor>();
+
+    private final AtomicBoolean mForceScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService mExecutor;
+
+    public static synchronized TileValueLog getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new TileValueLog(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private TileValueLog(Context context) {
+        mDir = new File(context.getFilesDir(), DIR_NAME);
+        mSeriesFile = new File(mDir, SERIES_FILE_NAME);
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, LOG_TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        if (!mDir.exists() && !mDir.mkdirs()) {
+            Log.d(LOG_TAG, "failed to create " + mDir);
+        }
+        loadSeries();
+        openSegments();
+    }
+
+    /**
+     * Records that the content value of the tile was increased by delta at the current time.
+     */
+    public void append(String trackerId, String tileId, int delta) {
+        append(System.currentTimeMillis(), getOrCreateSeries(trackerId, tileId), delta);
+    }
+
+    synchronized void append(long timestamp, int series, int delta) {
+        // Keeps the entries sorted if the wall clock is set back
+        if (timestamp < mLastTimestamp) {
+            timestamp = mLastTimestamp;
+        }
+
+        try {
+            Segment segment = activeSegment(timestamp);
+            timestamp = Math.max(timestamp, segment.baseTimestamp);
+            int offset = HEADER_SIZE + segment.count * ENTRY_SIZE;
+            segment.buffer.putInt(offset + 8, series);
+            segment.buffer.putInt(offset + 12, delta);
+            // The timestamp marks the entry as written, so it goes last
+            segment.buffer.putLong(offset, timestamp);
+            segment.count++;
+            mLastTimestamp = timestamp;
+        } catch (IOException e) {
+            Log.d(LOG_TAG, "append() IOException " + e.toString());
+            return;
+        }
+        scheduleForce();
+
+        for (int i = 0; i < mSubscribers.size(); i++) {
+            mSubscribers.get(i).onEntry(timestamp, series, delta);
+        }
+    }
+
+    /**
+     * Visits the entries from fromTimestamp on, then each entry appended afterwards, on the
+     * appending thread. No entry is missed or visited twice in between. The return value of
+     * the visitor is ignored for appended entries.
+     */
+    public synchronized void subscribe(long fromTimestamp, Visitor visitor) {
+        scan(fromTimestamp, Long.MAX_VALUE, visitor);
+        mSubscribers.add(visitor);
+    }
+
+    /**
+     * Returns the series of the tile or {@link TileStateTable#NO_HANDLE} if it was never logged.
+     */
+    public int getSeries(String trackerId, String tileId) {
+        return mSeries.get(trackerId, tileId);
+    }
+
+    public String getTrackerId(int series) {
+        return mSeries.getTrackerId(series);
+    }
+
+    public String getTileId(int series) {
+        return mSeries.getTileId(series);
+    }
+
+    /**
+     * Returns one more than the highest series id.
+     */
+    public int getSeriesCount() {
+        return mSeries.size();
+    }
+
+    /**
+     * Visits the entries with fromTimestamp <= timestamp < toTimestamp in time order, reading
+     * them directly from the mapped segments.
+     */
+    public void scan(long fromTimestamp, long toTimestamp, Visitor visitor) {
+        Segment[] segments = mSegments;
+        for (int i = 0; i < segments.length; i++) {
+            Segment segment = segments[i];
+            // Entries of a segment are not newer than the base timestamp of the next one
+            if (i + 1 < segments.length && segments[i + 1].baseTimestamp < fromTimestamp) {
+                continue;
+            }
+            if (segment.baseTimestamp >= toTimestamp) {
+                return;
+            }
+
+            int count = segment.count;
+            MappedByteBuffer buffer = segment.buffer;
+            for (int index = segment.lowerBound(fromTimestamp, count); index < count; index++) {
+                int offset = HEADER_SIZE + index * ENTRY_SIZE;
+                long timestamp = buffer.getLong(offset);
+                if (timestamp >= toTimestamp) {
+                    return;
+                }
+                if (!visitor.onEntry(timestamp, buffer.getInt(offset + 8), buffer.getInt(offset + 12))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the timestamp of the oldest entry, or -1 if the log is empty.
+     */
+    public long getFirstTimestamp() {
+        Segment[] segments = mSegments;
+        for (Segment segment : segments) {
+            if (segment.count > 0) {
+                return segment.buffer.getLong(HEADER_SIZE);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes the mapped segments to disk on the calling thread.
+     */
+    public void force() {
+        mForceScheduled.set(false);
+        Segment[] segments = mSegments;
+        if (segments.length > 0) {
+            segments[segments.length - 1].buffer.force();
+        }
+    }
+
+    private void scheduleForce() {
+        if (mForceScheduled.compareAndSet(false, true)) {
+            mExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    force();
+                }
+            }, FORCE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Segment activeSegment(long timestamp) throws IOException {
+        Segment[] segments = mSegments;
+        Segment active = segments.length > 0 ? segments[segments.length - 1] : null;
+        if (active != null && active.count < SEGMENT_CAPACITY
+                && timestamp - active.baseTimestamp < SEGMENT_MAX_AGE_MS) {
+            return active;
+        }
+
+        if (active != null) {
+            active.buffer.force();
+        }
+
+        // Base timestamps are unique as they name the files
+        long baseTimestamp = active != null ? Math.max(timestamp, active.baseTimestamp + 1) : timestamp;
+        Segment segment = Segment.create(new File(mDir, segmentName(baseTimestamp)), baseTimestamp);
+        Segment[] appended = new Segment[segments.length + 1];
+        System.arraycopy(segments, 0, appended, 0, segments.length);
+        appended[segments.length] = segment;
+        int first = firstRetained(appended, timestamp);
+        Segment[] rolled = new Segment[appended.length - first];
+        System.arraycopy(appended, first, rolled, 0, rolled.length);
+        mSegments = rolled;
+
+        // Mappings of deleted files stay readable by scans still holding them
+        for (int i = 0; i < first; i++) {
+            segments[i].file.delete();
+        }
+        return segment;
+    }
+
+    // Returns the index of the oldest segment to keep, at most MAX_SEGMENT_COUNT are kept
+    private static int firstRetained(Segment[] segments, long now) {
+        int first = Math.max(0, segments.length - MAX_SEGMENT_COUNT);
+        // Entries of a segment are older than the base timestamp of the next one
+        while (first + 1 < segments.length && segments[first + 1].baseTimestamp <= now - RETENTION_MS) {
+            first++;
+        }
+        return first;
+    }
+
+    private synchronized int getOrCreateSeries(String trackerId, String tileId) {
+        int series = mSeries.get(trackerId, tileId);
+        if (series != TileStateTable.NO_HANDLE) {
+            return series;
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(bytes);
+            record.writeUTF(trackerId);
+            record.writeUTF(tileId);
+            FileOutputStream out = new FileOutputStream(mSeriesFile, true);
+            try {
+                // One write per record, so a crash leaves at most a torn last record
+                out.write(bytes.toByteArray());
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            Log.d(LOG_TAG, "getOrCreateSeries() IOException " + e.toString());
+        }
+        return mSeries.intern(trackerId, tileId);
+    }
+
+    private void loadSeries() {
+        if (!mSeriesFile.exists()) {
+            return;
+        }
+
+        long validLength = 0;
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mSeriesFile)));
+            try {
+                while (true) {
+                    String trackerId = in.readUTF();
+                    String tileId = in.readUTF();
+                    mSeries.intern(trackerId, tileId);
+                    validLength += 2 + utfLength(trackerId) + 2 + utfLength(tileId);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (EOFException e) {
+            // End of file, possibly with a torn last record
+        } catch (IOException e) {
+            Log.d(LOG_TAG, "loadSeries() IOException " + e.toString());
+        }
+
+        if (validLength < mSeriesFile.length()) {
+            try {
+                RandomAccessFile raf = new RandomAccessFile(mSeriesFile, "rw");
+                try {
+                    raf.setLength(validLength);
+                } finally {
+                    raf.close();
+                }
+            } catch (IOException e) {
+                Log.d(LOG_TAG, "loadSeries() truncate IOException " + e.toString());
+            }
+        }
+    }
+
+    private void openSegments() {
+        File[] files = mDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_FILE_SUFFIX);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+
+        // Names are fixed-width hex base timestamps, so they sort by time
+        Arrays.sort(files);
+        ArrayList<Segment> opened = new ArrayList<Segment>();
+        for (int i = 0; i < files.length; i++) {
+            try {
+                Segment segment = Segment.open(files[i]);
+                if (segment != null) {
+                    opened.add(segment);
+                } else {
+                    files[i].delete();
+                }
+            } catch (IOException e) {
+                Log.d(LOG_TAG, "openSegments() IOException " + e.toString());
+            }
+        }
+
+        Segment[] segments = opened.toArray(new Segment[opened.size()]);
+        int first = firstRetained(segments, System.currentTimeMillis());
+        for (int i = 0; i < first; i++) {
+            segments[i].file.delete();
+        }
+        mSegments = Arrays.copyOfRange(segments, first, segments.length);
+        if (mSegments.length > 0) {
+            Segment last = mSegments[mSegments.length - 1];
+            mLastTimestamp = last.count > 0
+                    ? last.buffer.getLong(HEADER_SIZE + (last.count - 1) * ENTRY_SIZE)
+                    : last.baseTimestamp;
+        }
+    }
+
+    private static String segmentName(long timestamp) {
+        return String.format(Locale.US, "%016x", timestamp) + SEGMENT_FILE_SUFFIX;
+    }
+
+    private static int utfLength(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                length++;
+            } else if (c > 0x07FF) {
+                length += 3;
+            } else {
+                length += 2;
+            }
+        }
+        return length;
+    }
+
+    // One mapped segment file: a header, then entries up to the first zero timestamp
+    private static final class Segment {
+        final File file;
+        final long baseTimestamp;
+        final MappedByteBuffer buffer;
+        volatile int count;
+
+        private Segment(File file, long baseTimestamp, MappedByteBuffer buffer, int count) {
+            this.file = file;
+            this.baseTimestamp = baseTimestamp;
+            this.buffer = buffer;
+            this.count = count;
+        }
+
+        static Segment create(File file, long baseTimestamp) throws IOException {
+            MappedByteBuffer buffer = map(file);
+            buffer.putInt(0, SEGMENT_MAGIC);
+            buffer.putInt(4, ENTRY_SIZE);
+            buffer.putLong(8, baseTimestamp);
+            return new Segment(file, baseTimestamp, buffer, 0);
+        }
+
+        // Returns null if the file is not a segment
+        static Segment open(File file) throws IOException {
+            if (file.length() != SEGMENT_SIZE) {
+                return null;
+            }
+            MappedByteBuffer buffer = map(file);
+            if (buffer.getInt(0) != SEGMENT_MAGIC || buffer.getInt(4) != ENTRY_SIZE) {
+                return null;
+            }
+
+            // Written entries form a prefix, find its end
+            int low = 0;
+            int high = SEGMENT_CAPACITY;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (buffer.getLong(HEADER_SIZE + mid * ENTRY_SIZE) != 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return new Segment(file, buffer.getLong(8), buffer, low);
+        }
+
+        private static MappedByteBuffer map(File file) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(SEGMENT_SIZE);
+                // The mapping stays valid after the channel is closed
+                return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+            } finally {
+                raf.close();
+            }
+        }
+
+        // Returns the index of the first entry with a timestamp >= timestamp
+        int lowerBound(long timestamp, int count) {
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (buffer.getLong(HEADER_SIZE + mid * ENTRY_SIZE) < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
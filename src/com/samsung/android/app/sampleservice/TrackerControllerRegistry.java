@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import com.samsung.android.sdk.shealth.tracker.TrackerEventListener;
+import com.samsung.android.sdk.shealth.tracker.TrackerTileManager;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Process-wide registry of the tracker controllers and the TrackerTileManager they share.
+ * The controller PluginService creates registers itself in onCreate, so MyTrackerService and
+ * TileStateProvider reuse that warm instance instead of constructing a MyTracker and a
+ * TrackerTileManager per intent. A controller is dropped in onUnsubscribed, and the
+ * TrackerTileManager with the last one. Safe to use from any thread.
+ * Trackers declared in {@link TrackerManifestIndex} are kept in a slot per index position and
+ * created on first use from the controller class of their manifest, which may be any
+ * TrackerEventListener. Tiles of a controller that is not a MyTracker are built by a shared one.
+ */
+public final class TrackerControllerRegistry {
+
+    private static final String LOG_TAG = "TrackerControllers";
+
+    private static TrackerControllerRegistry sInstance;
+
+    // Set once, mIndex before mIndexed
+    private volatile TrackerManifestIndex mIndex;
+    private volatile AtomicReferenceArray<TrackerEventListener> mIndexed;
+
+    // Controllers of trackers this package does not declare
+    private final ConcurrentHashMap<String, TrackerEventListener> mUnindexed =
+            new ConcurrentHashMap<String, TrackerEventListener>();
+
+    // Builds the tiles of controllers that are not a MyTracker, written under this
+    private volatile MyTracker mTileBuilder;
+
+    // Written under this
+    private volatile TrackerTileManager mTileManager;
+    private boolean mTileManagerPending;
+
+    public static synchronized TrackerControllerRegistry getInstance() {
+        if (sInstance == null) {
+            sInstance = new TrackerControllerRegistry();
+        }
+        return sInstance;
+    }
+
+    private TrackerControllerRegistry() {
+    }
+
+    /**
+     * Returns the shared TrackerTileManager, or null if it cannot be created or the SDK is not
+     * initialized yet. Never blocks, as the PluginService callbacks reach it on the main thread.
+     * In the latter case it is created and attached to TilePostQueue, which replays the tiles
+     * deferred meanwhile, once the SDK is initialized.
+     */
+    public TrackerTileManager getTileManager(Context context) {
+        TrackerTileManager manager = mTileManager;
+        if (manager != null) {
+            return manager;
+        }
+
+        synchronized (this) {
+            if (mTileManager == null) {
+                // TrackerTileManager requires an initialized SDK
+                ShealthInitializer initializer = ShealthInitializer.getInstance();
+                if (initializer.getResult() == null) {
+                    if (!mTileManagerPending) {
+                        mTileManagerPending = true;
+                        final Context appContext = context.getApplicationContext();
+                        initializer.whenReady(appContext, new ShealthInitializer.Callback() {
+                            @Override
+                            public void onInitialized(ShealthInitializer.Result result) {
+                                getTileManager(appContext);
+                            }
+                        });
+                    }
+                    // Created by the callback already if the SDK finished in between
+                    return mTileManager;
+                }
+                mTileManagerPending = false;
+                try {
+                    mTileManager = new TrackerTileManager(context.getApplicationContext());
+                    TilePostQueue.getInstance(context).attach(mTileManager);
+                } catch (IllegalArgumentException e) {
+                    Log.d(LOG_TAG, "TrackerTileManager - IllegalArgumentException " + e.toString());
+                }
+            }
+            return mTileManager;
+        }
+    }
+
+    /**
+     * Registers controller as the one of trackerId.
+     */
+    public void register(Context context, String trackerId, TrackerEventListener controller) {
+        AtomicReferenceArray<TrackerEventListener> indexed = getIndexed(context);
+        int position = mIndex.indexOf(trackerId);
+        if (position >= 0) {
+            indexed.set(position, controller);
+        } else {
+            mUnindexed.put(trackerId, controller);
+        }
+    }
+
+    /**
+     * Returns the controller of trackerId, creating one if none is registered in this process yet.
+     */
+    public TrackerEventListener getController(Context context, String trackerId) {
+        AtomicReferenceArray<TrackerEventListener> indexed = getIndexed(context);
+        int position = mIndex.indexOf(trackerId);
+        if (position >= 0) {
+            TrackerEventListener controller = indexed.get(position);
+            if (controller == null) {
+                TrackerEventListener created =
+                        createController(context, trackerId, mIndex.getControllerClassName(position));
+                controller = indexed.compareAndSet(position, null, created) ? created : indexed.get(position);
+            }
+            return controller;
+        }
+
+        TrackerEventListener controller = mUnindexed.get(trackerId);
+        if (controller == null) {
+            TrackerEventListener created = new MyTracker(context);
+            controller = mUnindexed.putIfAbsent(trackerId, created);
+            if (controller == null) {
+                controller = created;
+            }
+        }
+        return controller;
+    }
+
+    /**
+     * Returns the MyTracker that builds and posts the tiles of trackerId: its controller if that
+     * is a MyTracker, a shared one otherwise.
+     */
+    public MyTracker getTracker(Context context, String trackerId) {
+        TrackerEventListener controller = getController(context, trackerId);
+        if (controller instanceof MyTracker) {
+            return (MyTracker) controller;
+        }
+
+        MyTracker tileBuilder = mTileBuilder;
+        if (tileBuilder != null) {
+            return tileBuilder;
+        }
+        synchronized (this) {
+            if (mTileBuilder == null) {
+                mTileBuilder = new MyTracker(context);
+            }
+            return mTileBuilder;
+        }
+    }
+
+    /**
+     * Drops the controller of trackerId, and the TrackerTileManager if it was the last one.
+     */
+    public void unregister(Context context, String trackerId) {
+        AtomicReferenceArray<TrackerEventListener> indexed = getIndexed(context);
+        int position = mIndex.indexOf(trackerId);
+        if (position >= 0) {
+            indexed.set(position, null);
+        } else {
+            mUnindexed.remove(trackerId);
+        }
+        synchronized (this) {
+            if (getControllerCount() == 0 && mTileManager != null) {
+                mTileManager = null;
+                mTileBuilder = null;
+                TilePostQueue.getInstance(context).attach(null);
+            }
+        }
+    }
+
+    public int getControllerCount() {
+        int count = mUnindexed.size();
+        AtomicReferenceArray<TrackerEventListener> indexed = mIndexed;
+        if (indexed != null) {
+            for (int i = 0; i < indexed.length(); i++) {
+                if (indexed.get(i) != null) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private AtomicReferenceArray<TrackerEventListener> getIndexed(Context context) {
+        AtomicReferenceArray<TrackerEventListener> indexed = mIndexed;
+        if (indexed != null) {
+            return indexed;
+        }
+
+        synchronized (this) {
+            if (mIndexed == null) {
+                mIndex = TrackerManifestIndex.getInstance(context);
+                mIndexed = new AtomicReferenceArray<TrackerEventListener>(mIndex.getTrackerCount());
+            }
+            return mIndexed;
+        }
+    }
+
+    // Loads the controller class only once the tracker is used. Like PluginService, a controller
+    // without a Context constructor is created through its empty one.
+    private static TrackerEventListener createController(Context context, String trackerId, String className) {
+        try {
+            Class<? extends TrackerEventListener> controllerClass =
+                    Class.forName(className).asSubclass(TrackerEventListener.class);
+            try {
+                return controllerClass.getConstructor(Context.class).newInstance(context);
+            } catch (NoSuchMethodException e) {
+                return controllerClass.getConstructor().newInstance();
+            }
+        } catch (ReflectiveOperationException e) {
+            if (TrackerTrace.WARN) {
+                TrackerTrace.w(TrackerTrace.Event.CONTROLLER_LOAD_FAILED, trackerId, className, e);
+            }
+        } catch (ClassCastException e) {
+            if (TrackerTrace.WARN) {
+                TrackerTrace.w(TrackerTrace.Event.CONTROLLER_LOAD_FAILED, trackerId, className, e);
+            }
+        }
+        return new MyTracker(context);
+    }
+}
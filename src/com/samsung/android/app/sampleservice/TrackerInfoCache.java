@@ -0,0 +1,319 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import com.samsung.android.sdk.shealth.tracker.TrackerInfo;
+import com.samsung.android.sdk.shealth.tracker.TrackerManager;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Disk cache of TrackerInfo display names and rendered icons.
+ * Entries are versioned by the installed SHealth version and dropped when SHealth is upgraded,
+ * so the UI can draw from the cache immediately and refresh it in the background.
+ */
+public final class TrackerInfoCache {
+
+    private static final String LOG_TAG = "TrackerInfoCache";
+
+    private static final String SHEALTH_PACKAGE_NAME = "com.sec.android.app.shealth";
+
+    private static final String CACHE_DIR_NAME = "tracker_info";
+    private static final String INDEX_FILE_NAME = "index";
+    private static final String ICON_FILE_SUFFIX = ".png";
+
+    private static final int INDEX_VERSION = 1;
+    private static final int DEFAULT_ICON_SIZE_DP = 30;
+
+    /**
+     * Cached information of one tracker.
+     */
+    public static final class Entry {
+        public final String displayName;
+        public final Bitmap icon;
+
+        Entry(String displayName, Bitmap icon) {
+            this.displayName = displayName;
+            this.icon = icon;
+        }
+
+        public Drawable getIcon(Context context) {
+            return icon != null ? new BitmapDrawable(context.getResources(), icon) : null;
+        }
+    }
+
+    public interface OnTrackerInfoChangedListener {
+        /**
+         * Called on the main thread when the entry of trackerId changed.
+         * entry is null if SHealth does not provide the tracker anymore.
+         */
+        void onTrackerInfoChanged(String trackerId, Entry entry);
+    }
+
+    private static TrackerInfoCache sInstance;
+
+    private final Context mContext;
+    private final File mCacheDir;
+    private final int mShealthVersion;
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<String, Entry>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor;
+
+    public static synchronized TrackerInfoCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new TrackerInfoCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private TrackerInfoCache(Context context) {
+        mContext = context;
+        mCacheDir = new File(context.getCacheDir(), CACHE_DIR_NAME);
+        mShealthVersion = getShealthVersion(context);
+        mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, LOG_TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        load();
+    }
+
+    /**
+     * Returns the cached entry of trackerId or null if it is not cached.
+     */
+    public Entry get(String trackerId) {
+        return mEntries.get(trackerId);
+    }
+
+    /**
+     * Reloads the given trackers from SHealth in the background and stores changed entries.
+     */
+    public void refresh(final TrackerManager trackerManager, final String[] trackerIds,
+            final OnTrackerInfoChangedListener listener) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean changed = false;
+                for (final String trackerId : trackerIds) {
+                    final Entry entry = fetch(trackerManager, trackerId);
+                    Entry cached = mEntries.get(trackerId);
+                    if (!isChanged(cached, entry)) {
+                        continue;
+                    }
+
+                    changed = true;
+                    if (entry != null) {
+                        mEntries.put(trackerId, entry);
+                    } else {
+                        mEntries.remove(trackerId);
+                    }
+                    writeIcon(trackerId, entry);
+
+                    if (listener != null) {
+                        mMainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                listener.onTrackerInfoChanged(trackerId, entry);
+                            }
+                        });
+                    }
+                }
+
+                if (changed) {
+                    writeIndex();
+                }
+            }
+        });
+    }
+
+    private Entry fetch(TrackerManager trackerManager, String trackerId) {
+        TrackerInfo trackerInfo;
+        try {
+            trackerInfo = trackerManager.getTrackerInfo(trackerId);
+        } catch (IllegalArgumentException e) {
+            Log.d(LOG_TAG, "fetch(" + trackerId + ") IllegalArgumentException " + e.toString());
+            return null;
+        }
+
+        if (trackerInfo == null) {
+            return null;
+        }
+        return new Entry(trackerInfo.getDisplayName(), render(trackerInfo.getIcon()));
+    }
+
+    private Bitmap render(Drawable drawable) {
+        if (drawable == null) {
+            return null;
+        }
+        if (drawable instanceof BitmapDrawable && ((BitmapDrawable) drawable).getBitmap() != null) {
+            return ((BitmapDrawable) drawable).getBitmap();
+        }
+
+        int defaultSize = Math.round(DEFAULT_ICON_SIZE_DP * mContext.getResources().getDisplayMetrics().density);
+        int width = drawable.getIntrinsicWidth() > 0 ? drawable.getIntrinsicWidth() : defaultSize;
+        int height = drawable.getIntrinsicHeight() > 0 ? drawable.getIntrinsicHeight() : defaultSize;
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, width, height);
+        drawable.draw(canvas);
+        return bitmap;
+    }
+
+    private static boolean isChanged(Entry cached, Entry entry) {
+        if (cached == null || entry == null) {
+            return cached != entry;
+        }
+        if (cached.displayName == null ? entry.displayName != null : !cached.displayName.equals(entry.displayName)) {
+            return true;
+        }
+        if (cached.icon == null || entry.icon == null) {
+            return cached.icon != entry.icon;
+        }
+        return !cached.icon.sameAs(entry.icon);
+    }
+
+    private void load() {
+        File indexFile = new File(mCacheDir, INDEX_FILE_NAME);
+        if (!indexFile.exists()) {
+            return;
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            try {
+                if (in.readInt() != INDEX_VERSION || in.readInt() != mShealthVersion) {
+                    // SHealth was upgraded or downgraded, cached names and icons may be stale
+                    Log.d(LOG_TAG, "SHealth version changed, invalidating cache");
+                    clear();
+                    return;
+                }
+
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String trackerId = in.readUTF();
+                    String displayName = in.readUTF();
+                    Bitmap icon = BitmapFactory.decodeFile(new File(mCacheDir, trackerId + ICON_FILE_SUFFIX).getPath());
+                    mEntries.put(trackerId, new Entry(displayName, icon));
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.d(LOG_TAG, "load() IOException " + e.toString());
+            mEntries.clear();
+        }
+    }
+
+    private void writeIndex() {
+        if (!mCacheDir.exists() && !mCacheDir.mkdirs()) {
+            return;
+        }
+
+        File indexFile = new File(mCacheDir, INDEX_FILE_NAME);
+        File tmpFile = new File(mCacheDir, INDEX_FILE_NAME + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            try {
+                out.writeInt(INDEX_VERSION);
+                out.writeInt(mShealthVersion);
+                out.writeInt(mEntries.size());
+                for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue().displayName != null ? entry.getValue().displayName : "");
+                }
+            } finally {
+                out.close();
+            }
+            if (!tmpFile.renameTo(indexFile)) {
+                Log.d(LOG_TAG, "writeIndex() failed to rename index");
+            }
+        } catch (IOException e) {
+            Log.d(LOG_TAG, "writeIndex() IOException " + e.toString());
+        }
+    }
+
+    private void writeIcon(String trackerId, Entry entry) {
+        if (!mCacheDir.exists() && !mCacheDir.mkdirs()) {
+            return;
+        }
+
+        File iconFile = new File(mCacheDir, trackerId + ICON_FILE_SUFFIX);
+        if (entry == null || entry.icon == null) {
+            iconFile.delete();
+            return;
+        }
+
+        try {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(iconFile));
+            try {
+                entry.icon.compress(Bitmap.CompressFormat.PNG, 100, out);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            Log.d(LOG_TAG, "writeIcon(" + trackerId + ") IOException " + e.toString());
+        }
+    }
+
+    private void clear() {
+        mEntries.clear();
+        File[] files = mCacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private static int getShealthVersion(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(SHEALTH_PACKAGE_NAME, 0).versionCode;
+        } catch (PackageManager.NameNotFoundException e) {
+            return -1;
+        }
+    }
+}
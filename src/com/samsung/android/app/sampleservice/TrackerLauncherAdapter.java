@@ -0,0 +1,242 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import com.samsung.android.sdk.shealth.tracker.TrackerManager;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Button;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Launcher rows of SHealth trackers, each with a button per destination of the tracker.
+ * Rows are recycled by the ListView, and all buttons share one click listener which reads the
+ * tracker and destination from the button tag. The TrackerInfo of a tracker is drawn from
+ * {@link TrackerInfoCache} and refreshed from SHealth only once its row is first shown, batched
+ * per layout pass, so the start-up cost does not grow with the number of trackers.
+ */
+public final class TrackerLauncherAdapter extends BaseAdapter {
+
+    /**
+     * A tracker and the destinations its row offers.
+     */
+    public static final class Item {
+        final String trackerId;
+        final Target[] targets;
+
+        /**
+         * A null destination opens the default screen of the tracker.
+         */
+        public Item(String trackerId, String... destinations) {
+            this.trackerId = trackerId;
+            targets = new Target[destinations.length];
+            for (int i = 0; i < destinations.length; i++) {
+                targets[i] = new Target(trackerId, destinations[i]);
+            }
+        }
+    }
+
+    // Tag of a destination button
+    private static final class Target {
+        final String trackerId;
+        final String destination;
+        final int labelResId;
+
+        Target(String trackerId, String destination) {
+            this.trackerId = trackerId;
+            this.destination = destination;
+            labelResId = getLabel(destination);
+        }
+    }
+
+    private static final class ViewHolder {
+        ImageView icon;
+        TextView name;
+        LinearLayout destinations;
+    }
+
+    private final Activity mActivity;
+    private final LayoutInflater mInflater;
+    private final Item[] mItems;
+    private final TrackerInfoCache mTrackerInfoCache;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private TrackerManager mTrackerManager;
+
+    // Trackers refreshed from SHealth in this session, and those waiting for the next batch
+    private final HashSet<String> mRequestedTrackerIds = new HashSet<String>();
+    private final ArrayList<String> mPendingTrackerIds = new ArrayList<String>();
+
+    private final View.OnClickListener mDestinationClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            Target target = (Target) v.getTag();
+            if (mTrackerManager == null) {
+                return;
+            }
+            try {
+                if (target.destination != null) {
+                    mTrackerManager.startActivity(mActivity, target.trackerId, target.destination);
+                } else {
+                    mTrackerManager.startActivity(mActivity, target.trackerId);
+                }
+            } catch (IllegalArgumentException e) {
+                Toast.makeText(mActivity.getApplicationContext(), e.toString(), Toast.LENGTH_SHORT).show();
+            } catch (IllegalStateException e) {
+                Toast.makeText(mActivity.getApplicationContext(), e.toString(), Toast.LENGTH_SHORT).show();
+            }
+        }
+    };
+
+    private final TrackerInfoCache.OnTrackerInfoChangedListener mTrackerInfoListener =
+            new TrackerInfoCache.OnTrackerInfoChangedListener() {
+        @Override
+        public void onTrackerInfoChanged(String trackerId, TrackerInfoCache.Entry entry) {
+            if (!mActivity.isFinishing()) {
+                // Only the visible rows are bound again
+                notifyDataSetChanged();
+            }
+        }
+    };
+
+    private final Runnable mRefreshPending = new Runnable() {
+        @Override
+        public void run() {
+            if (mTrackerManager == null || mPendingTrackerIds.isEmpty()) {
+                return;
+            }
+            String[] trackerIds = mPendingTrackerIds.toArray(new String[mPendingTrackerIds.size()]);
+            mPendingTrackerIds.clear();
+            mTrackerInfoCache.refresh(mTrackerManager, trackerIds, mTrackerInfoListener);
+        }
+    };
+
+    public TrackerLauncherAdapter(Activity activity, Item[] items) {
+        mActivity = activity;
+        mInflater = LayoutInflater.from(activity);
+        mItems = items;
+        mTrackerInfoCache = TrackerInfoCache.getInstance(activity);
+    }
+
+    /**
+     * Sets the TrackerManager once SHealth is initialized. Buttons do nothing and TrackerInfo is
+     * only drawn from the cache before.
+     */
+    public void setTrackerManager(TrackerManager trackerManager) {
+        mTrackerManager = trackerManager;
+        if (!mPendingTrackerIds.isEmpty()) {
+            mMainHandler.post(mRefreshPending);
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return mItems.length;
+    }
+
+    @Override
+    public Item getItem(int position) {
+        return mItems[position];
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        ViewHolder holder;
+        if (convertView == null) {
+            convertView = mInflater.inflate(R.layout.tracker_row, parent, false);
+            holder = new ViewHolder();
+            holder.icon = (ImageView) convertView.findViewById(R.id.tracker_icon_img);
+            holder.name = (TextView) convertView.findViewById(R.id.tracker_service_name);
+            holder.destinations = (LinearLayout) convertView.findViewById(R.id.ll_destinations);
+            convertView.setTag(holder);
+        } else {
+            holder = (ViewHolder) convertView.getTag();
+        }
+
+        Item item = mItems[position];
+        TrackerInfoCache.Entry entry = mTrackerInfoCache.get(item.trackerId);
+        holder.icon.setImageBitmap(entry != null ? entry.icon : null);
+        holder.name.setText(entry != null ? entry.displayName : null);
+        bindDestinations(holder.destinations, item.targets);
+
+        requestRefresh(item.trackerId);
+        return convertView;
+    }
+
+    // Reuses the buttons of a recycled row, adding buttons only if it has fewer than needed
+    private void bindDestinations(LinearLayout container, Target[] targets) {
+        for (int i = container.getChildCount(); i < targets.length; i++) {
+            Button button = (Button) mInflater.inflate(R.layout.tracker_destination_button, container, false);
+            button.setOnClickListener(mDestinationClickListener);
+            container.addView(button);
+        }
+
+        for (int i = 0; i < container.getChildCount(); i++) {
+            Button button = (Button) container.getChildAt(i);
+            if (i < targets.length) {
+                button.setTag(targets[i]);
+                button.setText(targets[i].labelResId);
+                button.setVisibility(View.VISIBLE);
+            } else {
+                button.setVisibility(View.GONE);
+            }
+        }
+    }
+
+    private void requestRefresh(String trackerId) {
+        if (!mRequestedTrackerIds.add(trackerId)) {
+            return;
+        }
+        mPendingTrackerIds.add(trackerId);
+        if (mTrackerManager != null && mPendingTrackerIds.size() == 1) {
+            // Rows bound in the same layout pass are refreshed together
+            mMainHandler.post(mRefreshPending);
+        }
+    }
+
+    private static int getLabel(String destination) {
+        if (TrackerManager.Destination.TRENDS.equals(destination)) {
+            return R.string.destination_trends;
+        } else if (TrackerManager.Destination.TARGET.equals(destination)) {
+            return R.string.destination_target;
+        } else if (TrackerManager.Destination.REWARD.equals(destination)) {
+            return R.string.destination_reward;
+        } else if (TrackerManager.Destination.TRACK_MANUAL.equals(destination)) {
+            return R.string.destination_track_manual;
+        }
+        return R.string.destination_track;
+    }
+}
@@ -0,0 +1,348 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import com.samsung.android.sdk.shealth.PluginService;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Index of the trackers this package declares.
+ * Each tracker is a meta-data entry of PluginService holding its JSON manifest. The manifests are
+ * parsed once after the package is installed or updated and written to a small binary index,
+ * so later processes load the tracker ids and controller class names without a JSON parser or
+ * the meta-data Bundles. The PackageManager is still asked for the lastUpdateTime of the package
+ * on every load, as that is what tells a stale index. A tracker id is looked up in O(1) through a
+ * hash table stored in the index. Immutable once created, safe to use from any thread.
+ */
+public final class TrackerManifestIndex {
+
+    private static final String LOG_TAG = "TrackerManifestIndex";
+
+    private static final String INDEX_FILE_NAME = "tracker_manifests.idx";
+
+    // "TMI1"
+    private static final int INDEX_MAGIC = 0x544d4931;
+    private static final int INDEX_VERSION = 1;
+
+    private static final String MANIFEST_TRACKER = "tracker";
+    private static final String MANIFEST_ID = "id";
+    private static final String MANIFEST_DISPLAY_NAME = "display-name";
+    private static final String MANIFEST_ICON = "icon";
+    private static final String MANIFEST_CONTROLLER = "controller";
+
+    private static TrackerManifestIndex sInstance;
+
+    // Indexed by position, in the order of the meta-data names
+    private final String[] mTrackerIds;
+    private final String[] mControllers;
+    private final String[] mDisplayNames;
+    private final String[] mIcons;
+
+    // Linear probing table of position + 1, 0 marks an empty slot
+    private final int[] mSlots;
+
+    public static synchronized TrackerManifestIndex getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = load(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private TrackerManifestIndex(String[] trackerIds, String[] controllers, String[] displayNames, String[] icons,
+            int[] slots) {
+        mTrackerIds = trackerIds;
+        mControllers = controllers;
+        mDisplayNames = displayNames;
+        mIcons = icons;
+        mSlots = slots;
+    }
+
+    /**
+     * Returns the position of trackerId in the index, or -1 if this package does not declare it.
+     */
+    public int indexOf(String trackerId) {
+        if (trackerId == null) {
+            return -1;
+        }
+        int mask = mSlots.length - 1;
+        int slot = hash(trackerId) & mask;
+        while (true) {
+            int entry = mSlots[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (trackerId.equals(mTrackerIds[entry - 1])) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public int getTrackerCount() {
+        return mTrackerIds.length;
+    }
+
+    public String getTrackerId(int position) {
+        return mTrackerIds[position];
+    }
+
+    /**
+     * Returns the class name of the TrackerEventListener of the tracker at position.
+     */
+    public String getControllerClassName(int position) {
+        return mControllers[position];
+    }
+
+    /**
+     * Returns the name of the string resource with the display name of the tracker at position.
+     */
+    public String getDisplayName(int position) {
+        return mDisplayNames[position];
+    }
+
+    /**
+     * Returns the name of the drawable resource with the icon of the tracker at position.
+     */
+    public String getIcon(int position) {
+        return mIcons[position];
+    }
+
+    private static TrackerManifestIndex load(Context context) {
+        long startTime = SystemClock.uptimeMillis();
+        long stamp = getPackageStamp(context);
+        File indexFile = new File(context.getFilesDir(), INDEX_FILE_NAME);
+
+        TrackerManifestIndex index = read(indexFile, stamp);
+        if (index == null) {
+            // First launch after an install or update, the manifests may have changed
+            index = parse(context);
+            write(indexFile, stamp, index);
+        }
+        Log.d(LOG_TAG, index.getTrackerCount() + " trackers in " + (SystemClock.uptimeMillis() - startTime) + " ms");
+        return index;
+    }
+
+    // Returns the index stored for stamp, or null if there is none or it is unreadable
+    private static TrackerManifestIndex read(File indexFile, long stamp) {
+        if (!indexFile.exists()) {
+            return null;
+        }
+
+        byte[] bytes = new byte[(int) indexFile.length()];
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(indexFile));
+            try {
+                in.readFully(bytes);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.d(LOG_TAG, "read() IOException " + e.toString());
+            return null;
+        }
+
+        if (bytes.length < 4) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        try {
+            in.skipBytes(bytes.length - 4);
+            if (in.readInt() != (int) crc.getValue()) {
+                Log.d(LOG_TAG, "index checksum mismatch");
+                return null;
+            }
+
+            in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4));
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION || in.readLong() != stamp) {
+                return null;
+            }
+
+            int count = in.readInt();
+            int[] slots = new int[in.readInt()];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = in.readInt();
+            }
+            String[] trackerIds = new String[count];
+            String[] controllers = new String[count];
+            String[] displayNames = new String[count];
+            String[] icons = new String[count];
+            for (int i = 0; i < count; i++) {
+                trackerIds[i] = in.readUTF();
+                controllers[i] = in.readUTF();
+                displayNames[i] = in.readUTF();
+                icons[i] = in.readUTF();
+            }
+            return new TrackerManifestIndex(trackerIds, controllers, displayNames, icons, slots);
+        } catch (IOException e) {
+            Log.d(LOG_TAG, "read() IOException " + e.toString());
+            return null;
+        }
+    }
+
+    private static void write(File indexFile, long stamp, TrackerManifestIndex index) {
+        File tmpFile = new File(indexFile.getPath() + ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile)), crc));
+            try {
+                out.writeInt(INDEX_MAGIC);
+                out.writeInt(INDEX_VERSION);
+                out.writeLong(stamp);
+                out.writeInt(index.mTrackerIds.length);
+                out.writeInt(index.mSlots.length);
+                for (int slot : index.mSlots) {
+                    out.writeInt(slot);
+                }
+                for (int i = 0; i < index.mTrackerIds.length; i++) {
+                    out.writeUTF(index.mTrackerIds[i]);
+                    out.writeUTF(index.mControllers[i]);
+                    out.writeUTF(index.mDisplayNames[i]);
+                    out.writeUTF(index.mIcons[i]);
+                }
+                out.writeInt((int) crc.getValue());
+            } finally {
+                out.close();
+            }
+            if (!tmpFile.renameTo(indexFile)) {
+                Log.d(LOG_TAG, "write() failed to rename index");
+            }
+        } catch (IOException e) {
+            Log.d(LOG_TAG, "write() IOException " + e.toString());
+            tmpFile.delete();
+        }
+    }
+
+    // Parses the manifests declared in the meta-data of PluginService
+    private static TrackerManifestIndex parse(Context context) {
+        Bundle metaData = null;
+        try {
+            ServiceInfo serviceInfo = context.getPackageManager().getServiceInfo(
+                    new ComponentName(context, PluginService.class), PackageManager.GET_META_DATA);
+            metaData = serviceInfo.metaData;
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.d(LOG_TAG, "parse() NameNotFoundException " + e.toString());
+        }
+
+        ArrayList<String> keys = new ArrayList<String>();
+        if (metaData != null) {
+            keys.addAll(metaData.keySet());
+        }
+        Collections.sort(keys);
+
+        ArrayList<String[]> entries = new ArrayList<String[]>(keys.size());
+        for (String key : keys) {
+            String manifest = metaData.getString(key);
+            if (manifest == null) {
+                continue;
+            }
+            try {
+                JSONObject tracker = new JSONObject(manifest).getJSONObject(MANIFEST_TRACKER);
+                entries.add(new String[] {
+                        tracker.getString(MANIFEST_ID),
+                        tracker.getString(MANIFEST_CONTROLLER),
+                        tracker.optString(MANIFEST_DISPLAY_NAME),
+                        tracker.optString(MANIFEST_ICON)
+                });
+            } catch (JSONException e) {
+                Log.d(LOG_TAG, "parse(" + key + ") JSONException " + e.toString());
+            }
+        }
+
+        int count = entries.size();
+        String[] trackerIds = new String[count];
+        String[] controllers = new String[count];
+        String[] displayNames = new String[count];
+        String[] icons = new String[count];
+
+        // At most half full so probes stay short
+        int slotCount = 1;
+        while (slotCount < count * 2) {
+            slotCount <<= 1;
+        }
+        int[] slots = new int[slotCount];
+        int mask = slotCount - 1;
+
+        int size = 0;
+        for (String[] entry : entries) {
+            int slot = hash(entry[0]) & mask;
+            while (slots[slot] != 0 && !entry[0].equals(trackerIds[slots[slot] - 1])) {
+                slot = (slot + 1) & mask;
+            }
+            if (slots[slot] != 0) {
+                Log.d(LOG_TAG, "parse() duplicate tracker " + entry[0]);
+                continue;
+            }
+            trackerIds[size] = entry[0];
+            controllers[size] = entry[1];
+            displayNames[size] = entry[2];
+            icons[size] = entry[3];
+            slots[slot] = ++size;
+        }
+
+        if (size < count) {
+            trackerIds = Arrays.copyOf(trackerIds, size);
+            controllers = Arrays.copyOf(controllers, size);
+            displayNames = Arrays.copyOf(displayNames, size);
+            icons = Arrays.copyOf(icons, size);
+        }
+        return new TrackerManifestIndex(trackerIds, controllers, displayNames, icons, slots);
+    }
+
+    // Changes whenever the package is installed or updated, and with it the manifests
+    private static long getPackageStamp(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return -1;
+        }
+    }
+
+    private static int hash(String trackerId) {
+        int h = trackerId.hashCode();
+        // Spread the high bits as the table index only uses the low ones
+        return h ^ (h >>> 16);
+    }
+}
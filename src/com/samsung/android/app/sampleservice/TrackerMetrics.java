@@ -0,0 +1,247 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide event counters and latency histograms of the tracker callbacks and tile posts.
+ * Recording is lock-free and does not allocate. Histograms have fixed bucket bounds, so
+ * percentiles are reported as the upper bound of the bucket they fall into.
+ */
+public final class TrackerMetrics {
+
+    /**
+     * Timed operations.
+     */
+    public enum Timer {
+        ON_CREATE,
+        ON_SUBSCRIBED,
+        ON_UNSUBSCRIBED,
+        ON_PAUSED,
+        ON_TILE_REQUESTED,
+        ON_TILE_REMOVED,
+        POST_DEFAULT_TILE,
+        UPDATE_TILE,
+        TILE_POST,
+        SERVICE_INTENT,
+        TILE_REFRESH
+    }
+
+    /**
+     * Counted events.
+     */
+    public enum Counter {
+        // TrackerTileManager.post threw or returned false
+        POST_FAILED,
+        // A post was requested without a TrackerTileManager
+        POST_NO_MANAGER,
+        // Building a tile threw
+        TILE_BUILD_FAILED,
+        // MyTrackerService received an intent without tracker or tile id
+        SERVICE_INTENT_INVALID,
+        // MyTrackerService received an intent with a wrong validation value
+        SERVICE_VALIDATION_FAILED,
+        // An intent over the rate limit of its tile was folded into a later one
+        ADMISSION_FOLDED,
+        // An intent with a wrong validation value was rejected before admission
+        ADMISSION_REJECTED,
+        // An intent was passed on without a rate limit as too many tiles were limited already
+        ADMISSION_UNLIMITED,
+        // A post was queued in TilePostQueue until SHealth is reachable
+        POST_DEFERRED,
+        // A queued post was replayed successfully
+        POST_REPLAYED,
+        // A posted tile was rebuilt by a periodic refresh pass
+        TILE_REFRESHED
+    }
+
+    // Upper bounds of the histogram buckets in microseconds, the last bucket is unbounded
+    private static final long[] BUCKET_BOUNDS_US = {
+            50, 100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 500000, 1000000
+    };
+    private static final int BUCKET_COUNT = BUCKET_BOUNDS_US.length + 1;
+
+    // Per timer: count, sum, max, then the buckets
+    private static final int COUNT_OFFSET = 0;
+    private static final int SUM_OFFSET = 1;
+    private static final int MAX_OFFSET = 2;
+    private static final int BUCKET_OFFSET = 3;
+    private static final int TIMER_STRIDE = BUCKET_OFFSET + BUCKET_COUNT;
+
+    private static final Timer[] TIMERS = Timer.values();
+    private static final Counter[] COUNTERS = Counter.values();
+
+    private static final AtomicLongArray sTimers = new AtomicLongArray(TIMERS.length * TIMER_STRIDE);
+    private static final AtomicLongArray sCounters = new AtomicLongArray(COUNTERS.length);
+
+    private TrackerMetrics() {
+    }
+
+    /**
+     * Returns the start time to pass to {@link #record(Timer, long)}.
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time elapsed since startNanos, as returned by {@link #start()}.
+     */
+    public static void record(Timer timer, long startNanos) {
+        long micros = (System.nanoTime() - startNanos) / 1000;
+        if (micros < 0) {
+            micros = 0;
+        }
+
+        int base = timer.ordinal() * TIMER_STRIDE;
+        sTimers.incrementAndGet(base + COUNT_OFFSET);
+        sTimers.addAndGet(base + SUM_OFFSET, micros);
+        sTimers.incrementAndGet(base + BUCKET_OFFSET + bucketOf(micros));
+
+        long max;
+        do {
+            max = sTimers.get(base + MAX_OFFSET);
+        } while (micros > max && !sTimers.compareAndSet(base + MAX_OFFSET, max, micros));
+    }
+
+    public static void increment(Counter counter) {
+        sCounters.incrementAndGet(counter.ordinal());
+    }
+
+    public static long getCount(Counter counter) {
+        return sCounters.get(counter.ordinal());
+    }
+
+    public static long getCount(Timer timer) {
+        return sTimers.get(timer.ordinal() * TIMER_STRIDE + COUNT_OFFSET);
+    }
+
+    public static long getSumMicros(Timer timer) {
+        return sTimers.get(timer.ordinal() * TIMER_STRIDE + SUM_OFFSET);
+    }
+
+    public static long getMaxMicros(Timer timer) {
+        return sTimers.get(timer.ordinal() * TIMER_STRIDE + MAX_OFFSET);
+    }
+
+    /**
+     * Returns the upper bound in microseconds of the bucket holding the given percentile
+     * (0..100) of the recorded times, Long.MAX_VALUE for the unbounded bucket or 0 if nothing
+     * was recorded.
+     */
+    public static long getPercentileMicros(Timer timer, int percentile) {
+        int base = timer.ordinal() * TIMER_STRIDE + BUCKET_OFFSET;
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += sTimers.get(base + i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (total * percentile + 99) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_US.length; i++) {
+            seen += sTimers.get(base + i);
+            if (seen >= rank) {
+                return BUCKET_BOUNDS_US[i];
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public static long[] getBucketBoundsMicros() {
+        return BUCKET_BOUNDS_US.clone();
+    }
+
+    /**
+     * Returns a copy of the bucket counts of timer, one more than the bucket bounds.
+     */
+    public static long[] getBuckets(Timer timer) {
+        int base = timer.ordinal() * TIMER_STRIDE + BUCKET_OFFSET;
+        long[] buckets = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = sTimers.get(base + i);
+        }
+        return buckets;
+    }
+
+    /**
+     * Resets all counters and histograms.
+     */
+    public static void reset() {
+        for (int i = 0; i < sTimers.length(); i++) {
+            sTimers.set(i, 0);
+        }
+        for (int i = 0; i < sCounters.length(); i++) {
+            sCounters.set(i, 0);
+        }
+    }
+
+    /**
+     * Writes the metrics and the post scheduler statistics as text.
+     */
+    public static void dump(PrintWriter pw) {
+        pw.println("Counters:");
+        for (Counter counter : COUNTERS) {
+            pw.println("  " + counter.name().toLowerCase(Locale.US) + " : " + getCount(counter));
+        }
+
+        pw.println("Timers (us):");
+        for (Timer timer : TIMERS) {
+            long count = getCount(timer);
+            if (count == 0) {
+                continue;
+            }
+            pw.println("  " + timer.name().toLowerCase(Locale.US) + " : count=" + count
+                    + " avg=" + getSumMicros(timer) / count
+                    + " p50<=" + formatBound(getPercentileMicros(timer, 50))
+                    + " p90<=" + formatBound(getPercentileMicros(timer, 90))
+                    + " p99<=" + formatBound(getPercentileMicros(timer, 99))
+                    + " max=" + getMaxMicros(timer));
+        }
+
+        TilePostScheduler scheduler = TilePostScheduler.getInstance();
+        pw.println("TilePostScheduler: requested=" + scheduler.getRequestedCount()
+                + " merged=" + scheduler.getMergedCount()
+                + " sent=" + scheduler.getSentCount()
+                + " skipped=" + scheduler.getSkippedCount());
+    }
+
+    private static String formatBound(long micros) {
+        return micros == Long.MAX_VALUE ? "inf" : String.valueOf(micros);
+    }
+
+    private static int bucketOf(long micros) {
+        int low = 0;
+        int high = BUCKET_BOUNDS_US.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (micros <= BUCKET_BOUNDS_US[mid]) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.UriMatcher;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Read-only view of {@link TrackerMetrics}, next to the PluginContentProvider of the SDK.
+ * Reading requires android.permission.DUMP, e.g.
+ * adb shell content query --uri content://com.samsung.android.app.sampleservice.metrics/timers
+ */
+public final class TrackerMetricsProvider extends ContentProvider {
+
+    public static final String AUTHORITY = "com.samsung.android.app.sampleservice.metrics";
+
+    public static final Uri TIMERS_URI = Uri.parse("content://" + AUTHORITY + "/timers");
+    public static final Uri COUNTERS_URI = Uri.parse("content://" + AUTHORITY + "/counters");
+
+    public static final String COLUMN_NAME = "name";
+    public static final String COLUMN_COUNT = "count";
+    public static final String COLUMN_SUM_US = "sum_us";
+    public static final String COLUMN_MAX_US = "max_us";
+    public static final String COLUMN_P50_US = "p50_us";
+    public static final String COLUMN_P90_US = "p90_us";
+    public static final String COLUMN_P99_US = "p99_us";
+
+    private static final String[] TIMER_COLUMNS = {
+            COLUMN_NAME, COLUMN_COUNT, COLUMN_SUM_US, COLUMN_MAX_US, COLUMN_P50_US, COLUMN_P90_US, COLUMN_P99_US
+    };
+    private static final String[] COUNTER_COLUMNS = {
+            COLUMN_NAME, COLUMN_COUNT
+    };
+
+    private static final int MATCH_TIMERS = 1;
+    private static final int MATCH_COUNTERS = 2;
+
+    private static final UriMatcher sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
+
+    static {
+        sUriMatcher.addURI(AUTHORITY, "timers", MATCH_TIMERS);
+        sUriMatcher.addURI(AUTHORITY, "counters", MATCH_COUNTERS);
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        switch (sUriMatcher.match(uri)) {
+            case MATCH_TIMERS: {
+                MatrixCursor cursor = new MatrixCursor(TIMER_COLUMNS);
+                for (TrackerMetrics.Timer timer : TrackerMetrics.Timer.values()) {
+                    cursor.addRow(new Object[] {
+                            timer.name().toLowerCase(Locale.US),
+                            TrackerMetrics.getCount(timer),
+                            TrackerMetrics.getSumMicros(timer),
+                            TrackerMetrics.getMaxMicros(timer),
+                            TrackerMetrics.getPercentileMicros(timer, 50),
+                            TrackerMetrics.getPercentileMicros(timer, 90),
+                            TrackerMetrics.getPercentileMicros(timer, 99)
+                    });
+                }
+                return cursor;
+            }
+            case MATCH_COUNTERS: {
+                MatrixCursor cursor = new MatrixCursor(COUNTER_COLUMNS);
+                for (TrackerMetrics.Counter counter : TrackerMetrics.Counter.values()) {
+                    cursor.addRow(new Object[] {
+                            counter.name().toLowerCase(Locale.US),
+                            TrackerMetrics.getCount(counter)
+                    });
+                }
+                return cursor;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown uri " + uri);
+        }
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        switch (sUriMatcher.match(uri)) {
+            case MATCH_TIMERS:
+                return "vnd.android.cursor.dir/vnd." + AUTHORITY + ".timer";
+            case MATCH_COUNTERS:
+                return "vnd.android.cursor.dir/vnd." + AUTHORITY + ".counter";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Inserts nothing and returns null, metrics are read-only.
+     */
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        return null;
+    }
+
+    /**
+     * Deletes nothing and returns 0, metrics are read-only.
+     */
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        return 0;
+    }
+
+    /**
+     * Updates nothing and returns 0, metrics are read-only.
+     */
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        return 0;
+    }
+
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        TrackerMetrics.dump(writer);
+    }
+}
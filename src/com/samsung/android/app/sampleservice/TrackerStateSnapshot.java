@@ -0,0 +1,313 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary snapshot of the state of all tiles and of the validation keys.
+ * A snapshot is written sequentially through a FileChannel into a temporary file which replaces the
+ * target once complete, and is read through a memory map. It ends with a CRC32 of all bytes before,
+ * which is checked before any of its content is used.
+ * TileStateStore compacts its journal into one, and {@link #export} and {@link #restore} carry the
+ * state over to a reinstall or another device.
+ *
+ * Layout, big endian, a string being its unsigned short UTF-8 length followed by the bytes:
+ * <pre>
+ *   int magic, short version, short flags, int generation, long createdAt, int keyCount, int tileCount
+ *   keyCount strings: the current validation key, then the previous one
+ *   tileCount tiles: string trackerId, string tileId, int contentValue, byte loggedIn
+ *   int crc32
+ * </pre>
+ */
+public final class TrackerStateSnapshot {
+
+    static final int MAGIC = 0x54535333; // "TSS3"
+    static final short VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 2 + 2 + 4 + 8 + 4 + 4;
+    private static final int CHECKSUM_SIZE = 4;
+    private static final int MAX_STRING_LENGTH = 0xffff;
+    // Holds at least one string of the maximum length
+    private static final int BUFFER_SIZE = 128 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Receives the content of a snapshot, only after its checksum was verified.
+     */
+    public interface Visitor {
+        /**
+         * Called first, only if the snapshot holds validation keys. previousKey may be null.
+         */
+        void onValidationKeys(String key, String previousKey);
+
+        void onTile(String trackerId, String tileId, int contentValue, boolean isLoggedIn);
+    }
+
+    private TrackerStateSnapshot() {
+    }
+
+    /**
+     * Writes the state of all tiles and the validation keys to file.
+     */
+    public static void export(Context context, File file) throws IOException {
+        ValidationKeyVerifier verifier = ValidationKeyVerifier.getInstance(context);
+        TileStateStore.getInstance(context).writeSnapshot(file, 0, verifier.getKey(), verifier.getPreviousKey());
+    }
+
+    /**
+     * Replaces the state of all tiles, and the validation keys if the snapshot holds them, with the
+     * content of file. Nothing is changed if the file is not a valid snapshot.
+     */
+    public static void restore(Context context, File file) throws IOException {
+        final String[] keys = new String[2];
+        final ArrayList<String> ids = new ArrayList<String>();
+        final ArrayList<int[]> fields = new ArrayList<int[]>();
+        read(file, new Visitor() {
+            @Override
+            public void onValidationKeys(String key, String previousKey) {
+                keys[0] = key;
+                keys[1] = previousKey;
+            }
+
+            @Override
+            public void onTile(String trackerId, String tileId, int contentValue, boolean isLoggedIn) {
+                ids.add(trackerId);
+                ids.add(tileId);
+                fields.add(new int[] {contentValue, isLoggedIn ? 1 : 0});
+            }
+        });
+
+        TileStateStore.getInstance(context).restoreSnapshot(ids, fields);
+        if (keys[0] != null) {
+            ValidationKeyVerifier.getInstance(context).restore(keys[0], keys[1]);
+        }
+    }
+
+    /**
+     * Returns true if file starts like a snapshot of this format, of any version.
+     */
+    static boolean isSnapshot(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return raf.length() >= 4 && raf.readInt() == MAGIC;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Verifies the snapshot in file, then passes its content to visitor and returns its generation.
+     */
+    static int read(File file, Visitor visitor) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE + CHECKSUM_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("invalid snapshot size " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            int end = (int) size - CHECKSUM_SIZE;
+            CRC32 crc = new CRC32();
+            byte[] chunk = new byte[Math.min(BUFFER_SIZE, end)];
+            while (buffer.position() < end) {
+                int length = Math.min(chunk.length, end - buffer.position());
+                buffer.get(chunk, 0, length);
+                crc.update(chunk, 0, length);
+            }
+            if ((int) crc.getValue() != buffer.getInt(end)) {
+                throw new IOException("snapshot checksum mismatch");
+            }
+
+            buffer.position(0);
+            buffer.limit(end);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("not a snapshot");
+            }
+            short version = buffer.getShort();
+            if (version > VERSION) {
+                throw new IOException("unsupported snapshot version " + version);
+            }
+            buffer.getShort(); // flags, none defined yet
+            int generation = buffer.getInt();
+            buffer.getLong(); // createdAt
+            int keyCount = buffer.getInt();
+            int tileCount = buffer.getInt();
+
+            if (keyCount > 0) {
+                String key = readString(buffer, chunk);
+                String previousKey = keyCount > 1 ? readString(buffer, chunk) : null;
+                for (int i = 2; i < keyCount; i++) {
+                    readString(buffer, chunk);
+                }
+                visitor.onValidationKeys(key, previousKey != null && !previousKey.isEmpty() ? previousKey : null);
+            }
+            for (int i = 0; i < tileCount; i++) {
+                String trackerId = readString(buffer, chunk);
+                String tileId = readString(buffer, chunk);
+                int contentValue = buffer.getInt();
+                boolean isLoggedIn = buffer.get() != 0;
+                visitor.onTile(trackerId, tileId, contentValue, isLoggedIn);
+            }
+            return generation;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("truncated snapshot");
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static String readString(ByteBuffer buffer, byte[] chunk) {
+        int length = buffer.getShort() & 0xffff;
+        // The chunk holds any string unless the whole file is smaller
+        byte[] bytes = length <= chunk.length ? chunk : new byte[length];
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, UTF_8);
+    }
+
+    /**
+     * Streams a snapshot into a temporary file which replaces the target on {@link #commit()}.
+     */
+    static final class Writer {
+        private final File mFile;
+        private final File mTmpFile;
+        private final FileOutputStream mOutput;
+        private final FileChannel mChannel;
+        private final ByteBuffer mBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CRC32 mCrc = new CRC32();
+        private final int mTileCount;
+        private int mWrittenTiles;
+
+        /**
+         * Starts a snapshot of tileCount tiles. key and previousKey may be null.
+         */
+        Writer(File file, int generation, int tileCount, String key, String previousKey) throws IOException {
+            mFile = file;
+            mTmpFile = new File(file.getPath() + ".tmp");
+            mTileCount = tileCount;
+            mOutput = new FileOutputStream(mTmpFile);
+            mChannel = mOutput.getChannel();
+
+            int keyCount = key == null ? 0 : previousKey == null ? 1 : 2;
+            mBuffer.putInt(MAGIC)
+                    .putShort(VERSION)
+                    .putShort((short) 0)
+                    .putInt(generation)
+                    .putLong(System.currentTimeMillis())
+                    .putInt(keyCount)
+                    .putInt(tileCount);
+            try {
+                if (key != null) {
+                    putString(key);
+                }
+                if (previousKey != null) {
+                    putString(previousKey);
+                }
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+        }
+
+        void writeTile(String trackerId, String tileId, int contentValue, boolean isLoggedIn) throws IOException {
+            putString(trackerId);
+            putString(tileId);
+            ensureRemaining(4 + 1);
+            mBuffer.putInt(contentValue).put((byte) (isLoggedIn ? 1 : 0));
+            mWrittenTiles++;
+        }
+
+        /**
+         * Writes the checksum, syncs the file to disk and moves it in place of the target.
+         */
+        void commit() throws IOException {
+            try {
+                if (mWrittenTiles != mTileCount) {
+                    throw new IOException("wrote " + mWrittenTiles + " of " + mTileCount + " tiles");
+                }
+                drain();
+                mBuffer.putInt((int) mCrc.getValue());
+                mBuffer.flip();
+                while (mBuffer.hasRemaining()) {
+                    mChannel.write(mBuffer);
+                }
+                mChannel.force(true);
+                mOutput.close();
+                if (!mTmpFile.renameTo(mFile)) {
+                    throw new IOException("failed to rename " + mTmpFile);
+                }
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+        }
+
+        /**
+         * Drops the partial snapshot, leaving the target untouched.
+         */
+        void abort() {
+            try {
+                mOutput.close();
+            } catch (IOException e) {
+                // Deleted anyway
+            }
+            mTmpFile.delete();
+        }
+
+        private void putString(String s) throws IOException {
+            byte[] bytes = s.getBytes(UTF_8);
+            if (bytes.length > MAX_STRING_LENGTH) {
+                throw new IOException("string too long for a snapshot: " + bytes.length + " bytes");
+            }
+            ensureRemaining(2 + bytes.length);
+            mBuffer.putShort((short) bytes.length).put(bytes);
+        }
+
+        private void ensureRemaining(int length) throws IOException {
+            if (mBuffer.remaining() < length) {
+                drain();
+            }
+        }
+
+        // Checksums and writes out the buffered bytes
+        private void drain() throws IOException {
+            mBuffer.flip();
+            mCrc.update(mBuffer.array(), mBuffer.arrayOffset(), mBuffer.limit());
+            while (mBuffer.hasRemaining()) {
+                mChannel.write(mBuffer);
+            }
+            mBuffer.clear();
+        }
+    }
+}
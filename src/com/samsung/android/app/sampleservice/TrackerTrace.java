@@ -0,0 +1,178 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Trace of tracker events in a fixed-size ring buffer, dumped by MyTrackerService.dump.
+ * An event is recorded as its id, level, time and arguments, which are object references and a long,
+ * so recording builds no strings and allocates nothing. Entries are formatted only when dumped.
+ * Call sites are guarded by {@link #DEBUG} or {@link #WARN}, which are constants, so raising
+ * {@link #MIN_LEVEL} removes them at compile time.
+ * Usage:
+ *     if (TrackerTrace.DEBUG) {
+ *         TrackerTrace.d(TrackerTrace.Event.ON_TILE_REQUESTED, trackerId, tileId);
+ *     }
+ */
+public final class TrackerTrace {
+
+    public static final int LEVEL_DEBUG = 0;
+    public static final int LEVEL_WARN = 1;
+    public static final int LEVEL_OFF = 2;
+
+    // Events below this level are compiled out
+    public static final int MIN_LEVEL = LEVEL_DEBUG;
+
+    public static final boolean DEBUG = MIN_LEVEL <= LEVEL_DEBUG;
+    public static final boolean WARN = MIN_LEVEL <= LEVEL_WARN;
+
+    /**
+     * Traced events. The format refers to the arguments by position: %1$s to %3$s are the
+     * object arguments and %4$d is the long argument.
+     */
+    public enum Event {
+        MY_TRACKER_CREATED("MyTracker()"),
+        ON_CREATE("onCreate(%1$s)"),
+        ON_SUBSCRIBED("onSubscribed(%1$s)"),
+        ON_UNSUBSCRIBED("onUnsubscribed(%1$s)"),
+        ON_PAUSED("onPaused(%1$s)"),
+        ON_TILE_REQUESTED("onTileRequested(%1$s, %2$s)"),
+        ON_TILE_REMOVED("onTileRemoved(%1$s, %2$s)"),
+        UPDATE_TILE("updateTile(%1$s, %2$s)"),
+        TILE_BUILD_FAILED("build(%1$s, %2$s) %3$s"),
+        SERVICE_INTENT("intent(%1$s, %2$s) log in request : %4$d"),
+        SERVICE_VALIDATION_FAILED("intent(%1$s, %2$s) invalid validation value"),
+        SERVICE_CONTENT_VALUE("intent(%1$s, %2$s) content value : %4$d"),
+        POST_FAILED("post(%1$s, %2$s) %3$s"),
+        REMOVE_FAILED("remove(%1$s, %2$s) %3$s"),
+        SYNC_FAILED("sync(%1$s) %3$s"),
+        CONTROLLER_LOAD_FAILED("loadController(%1$s, %2$s) %3$s"),
+        REPLAY("replay() %4$d tiles"),
+        REPLAY_FAILED("replay(%1$s, %2$s) %3$s"),
+        BACK_OFF("backOff() retry in %4$d ms"),
+        ROLLUPS_REBUILT("rollups rebuilt in %4$d ms"),
+        TASK_DROPPED("execute(%1$s) stripe full, dropped the oldest task of %2$s"),
+        TASK_FAILED("run(%1$s) %3$s");
+
+        final String format;
+
+        Event(String format) {
+            this.format = format;
+        }
+    }
+
+    private static final Event[] EVENTS = Event.values();
+
+    private static final int CAPACITY = 1024;
+    private static final int MASK = CAPACITY - 1;
+    private static final int ARG_COUNT = 3;
+
+    private static final AtomicLong sNext = new AtomicLong();
+
+    // Sequence number of the entry in each slot plus one, written last, 0 if the slot is empty
+    private static final long[] sSequences = new long[CAPACITY];
+    private static final long[] sTimes = new long[CAPACITY];
+    private static final int[] sEvents = new int[CAPACITY];
+    private static final Object[] sArgs = new Object[CAPACITY * ARG_COUNT];
+    private static final long[] sValues = new long[CAPACITY];
+
+    private TrackerTrace() {
+    }
+
+    public static void d(Event event, Object arg0) {
+        record(LEVEL_DEBUG, event, arg0, null, null, 0);
+    }
+
+    public static void d(Event event, Object arg0, Object arg1) {
+        record(LEVEL_DEBUG, event, arg0, arg1, null, 0);
+    }
+
+    public static void d(Event event, Object arg0, Object arg1, long value) {
+        record(LEVEL_DEBUG, event, arg0, arg1, null, value);
+    }
+
+    public static void w(Event event, Object arg0, Object arg1, Object arg2) {
+        record(LEVEL_WARN, event, arg0, arg1, arg2, 0);
+    }
+
+    private static void record(int level, Event event, Object arg0, Object arg1, Object arg2, long value) {
+        if (level < MIN_LEVEL) {
+            return;
+        }
+
+        long sequence = sNext.getAndIncrement();
+        int slot = (int) (sequence & MASK);
+        // Marks the slot as being written
+        sSequences[slot] = 0;
+        sTimes[slot] = System.currentTimeMillis();
+        sEvents[slot] = event.ordinal() << 1 | level;
+        sArgs[slot * ARG_COUNT] = arg0;
+        sArgs[slot * ARG_COUNT + 1] = arg1;
+        sArgs[slot * ARG_COUNT + 2] = arg2;
+        sValues[slot] = value;
+        sSequences[slot] = sequence + 1;
+    }
+
+    /**
+     * Clears the trace.
+     */
+    public static void reset() {
+        for (int slot = 0; slot < CAPACITY; slot++) {
+            sSequences[slot] = 0;
+            sArgs[slot * ARG_COUNT] = null;
+            sArgs[slot * ARG_COUNT + 1] = null;
+            sArgs[slot * ARG_COUNT + 2] = null;
+        }
+    }
+
+    /**
+     * Writes the entries oldest first. Entries overwritten while dumping are skipped.
+     */
+    public static void dump(PrintWriter writer) {
+        long end = sNext.get();
+        long start = Math.max(0, end - CAPACITY);
+        SimpleDateFormat timeFormat = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+
+        writer.println("TrackerTrace: " + (end - start) + " of " + end + " events");
+        for (long sequence = start; sequence < end; sequence++) {
+            int slot = (int) (sequence & MASK);
+            if (sSequences[slot] != sequence + 1) {
+                continue;
+            }
+            long time = sTimes[slot];
+            int event = sEvents[slot];
+            Object arg0 = sArgs[slot * ARG_COUNT];
+            Object arg1 = sArgs[slot * ARG_COUNT + 1];
+            Object arg2 = sArgs[slot * ARG_COUNT + 2];
+            long value = sValues[slot];
+            if (sSequences[slot] != sequence + 1) {
+                continue;
+            }
+
+            writer.println("  " + timeFormat.format(new Date(time))
+                    + ((event & 1) == LEVEL_WARN ? " W " : " D ")
+                    + String.format(Locale.US, EVENTS[event >>> 1].format, arg0, arg1, arg2, value));
+        }
+    }
+}
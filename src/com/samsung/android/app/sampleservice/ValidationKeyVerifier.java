@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2014 Samsung Electronics Co., Ltd. All rights reserved.
+ *
+ * Mobile Communication Division,
+ * IT & Mobile Communications, Samsung Electronics Co., Ltd.
+ *
+ * This software and its documentation are confidential and proprietary
+ * information of Samsung Electronics Co., Ltd.  No part of the software and
+ * documents may be copied, reproduced, transmitted, translated, or reduced to
+ * any electronic medium or machine-readable form without the prior written
+ * consent of Samsung Electronics.
+ *
+ * Samsung Electronics makes no representations with respect to the contents,
+ * and assumes no responsibility for any errors that might appear in the
+ * software and documents. This publication and the contents hereof are subject
+ * to change without notice.
+ */
+
+package com.samsung.android.app.sampleservice;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Base64;
+import android.util.Log;
+
+import java.security.SecureRandom;
+
+/**
+ * Owns the key carried by the button intents of posted tiles.
+ * The key is created on first use, kept in memory and compared in constant time, so
+ * MyTrackerService does not read it from disk for each intent. After a rotation the previous
+ * key is still accepted until the next rotation, as tiles posted with it may still be shown.
+ */
+public final class ValidationKeyVerifier {
+
+    private static final String LOG_TAG = "ValidationKeyVerifier";
+
+    private static final String SHARED_PREFERENCE_NAME = "tile_content";
+    private static final String VALIDATION_KEY = "validation_key";
+    private static final String PREVIOUS_VALIDATION_KEY = "previous_validation_key";
+
+    private static final int KEY_SIZE = 32;
+
+    private static ValidationKeyVerifier sInstance;
+
+    private final SharedPreferences mPreferences;
+    private SecureRandom mRandom;
+
+    private volatile String mKey;
+    private volatile String mPreviousKey;
+
+    public static synchronized ValidationKeyVerifier getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ValidationKeyVerifier(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ValidationKeyVerifier(Context context) {
+        mPreferences = context.getSharedPreferences(SHARED_PREFERENCE_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns the current key, loading or creating it on first use.
+     */
+    public String getKey() {
+        String key = mKey;
+        if (key == null) {
+            key = load();
+        }
+        return key;
+    }
+
+    /**
+     * Returns the key which was replaced by the last rotation, or null.
+     */
+    String getPreviousKey() {
+        getKey();
+        return mPreviousKey;
+    }
+
+    /**
+     * Returns true if value matches the current or the previous key.
+     */
+    public boolean verify(String value) {
+        if (value == null || value.isEmpty()) {
+            return false;
+        }
+
+        // Both comparisons always run so the time does not tell which key matched
+        boolean matchesKey = constantTimeEquals(value, getKey());
+        boolean matchesPreviousKey = constantTimeEquals(value, mPreviousKey);
+        return matchesKey | matchesPreviousKey;
+    }
+
+    /**
+     * Replaces the key with a new random one and rebuilds the tile blueprints carrying it.
+     * The replaced key stays valid until the next rotation.
+     */
+    public synchronized String rotate() {
+        String previousKey = getKey();
+        String key = generate();
+
+        mPreferences.edit()
+                .putString(VALIDATION_KEY, key)
+                .putString(PREVIOUS_VALIDATION_KEY, previousKey)
+                .apply();
+        mPreviousKey = previousKey;
+        mKey = key;
+
+        TileBlueprint.reset();
+        Log.d(LOG_TAG, "validation key rotated");
+        return key;
+    }
+
+    /**
+     * Replaces both keys with the ones of a restored snapshot, so tiles posted before are still accepted.
+     */
+    synchronized void restore(String key, String previousKey) {
+        mPreferences.edit()
+                .putString(VALIDATION_KEY, key)
+                .putString(PREVIOUS_VALIDATION_KEY, previousKey != null ? previousKey : "")
+                .apply();
+        mPreviousKey = previousKey;
+        mKey = key;
+
+        TileBlueprint.reset();
+    }
+
+    private synchronized String load() {
+        if (mKey != null) {
+            return mKey;
+        }
+
+        String key = mPreferences.getString(VALIDATION_KEY, "");
+        if (key.isEmpty()) {
+            key = generate();
+            mPreferences.edit().putString(VALIDATION_KEY, key).apply();
+        }
+        String previousKey = mPreferences.getString(PREVIOUS_VALIDATION_KEY, "");
+        mPreviousKey = previousKey.isEmpty() ? null : previousKey;
+        mKey = key;
+        return key;
+    }
+
+    private String generate() {
+        if (mRandom == null) {
+            mRandom = new SecureRandom();
+        }
+        byte[] keyBytes = new byte[KEY_SIZE];
+        mRandom.nextBytes(keyBytes);
+        return Base64.encodeToString(keyBytes, Base64.DEFAULT);
+    }
+
+    // Compares without returning early on the first differing character
+    private static boolean constantTimeEquals(String value, String key) {
+        if (key == null || value.length() != key.length()) {
+            return false;
+        }
+
+        int diff = 0;
+        for (int i = 0; i < key.length(); i++) {
+            diff |= value.charAt(i) ^ key.charAt(i);
+        }
+        return diff == 0;
+    }
+}